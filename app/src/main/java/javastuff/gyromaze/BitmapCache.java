@@ -0,0 +1,85 @@
+package javastuff.gyromaze;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of decoded images.
+ * Each image is decoded once for the size it is needed in and shared by all levels and game sessions.
+ * Least recently used images are dropped when the memory budget is exceeded.
+ */
+final class BitmapCache {
+    /**
+     * Decoded images by resource, size and format, measured in bytes
+     */
+    private static final LruCache<String, Bitmap> cache =
+            new LruCache<String, Bitmap>((int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+
+    private BitmapCache() {
+    }
+
+    /**
+     * Image with transparency scaled exactly to a square
+     * @param res Resources
+     * @param id Drawable resource
+     * @param size Width and height in pixels
+     * @return Shared image, must not be recycled
+     */
+    static Bitmap sprite(Resources res, int id, int size) {
+        String key = id + ":" + size + "x" + size;
+        Bitmap image = cache.get(key);
+        if (image == null) {
+            Bitmap decoded = decode(res, id, size, size, Bitmap.Config.ARGB_8888);
+            image = Bitmap.createScaledBitmap(decoded, size, size, true);
+            if (image != decoded)
+                decoded.recycle();
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Opaque image decoded without alpha, just large enough to be drawn stretched to the given size
+     * @param res Resources
+     * @param id Drawable resource
+     * @param width Largest width it is drawn in
+     * @param height Largest height it is drawn in
+     * @return Shared image, must not be recycled
+     */
+    static Bitmap opaque(Resources res, int id, int width, int height) {
+        String key = id + ":" + width + "x" + height + ":565";
+        Bitmap image = cache.get(key);
+        if (image == null) {
+            image = decode(res, id, width, height, Bitmap.Config.RGB_565);
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Decodes a resource subsampled by the largest power of two that keeps it at least the given size
+     */
+    private static Bitmap decode(Resources res, int id, int width, int height, Bitmap.Config config) {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        // sizes are handled here, no density scaling
+        opts.inScaled = false;
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(res, id, opts);
+
+        int sample = 1;
+        while (opts.outWidth / (sample * 2) >= width && opts.outHeight / (sample * 2) >= height)
+            sample *= 2;
+
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = sample;
+        opts.inPreferredConfig = config;
+        return BitmapFactory.decodeResource(res, id, opts);
+    }
+}
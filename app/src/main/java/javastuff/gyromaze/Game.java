@@ -6,37 +6,71 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.Display;
 import android.view.MotionEvent;
 import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
 import android.view.View;
-import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.widget.FrameLayout;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import javastuff.gyromaze.core.Camera;
+import javastuff.gyromaze.core.ChunkedLevel;
+import javastuff.gyromaze.core.Coin;
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.Grid;
+import javastuff.gyromaze.core.Hole;
+import javastuff.gyromaze.core.LevelCache;
+import javastuff.gyromaze.core.MazeAlgorithm;
+import javastuff.gyromaze.core.Recording;
+import javastuff.gyromaze.core.TiltFilter;
+import javastuff.gyromaze.core.Vector;
+import javastuff.gyromaze.core.Wall;
+import javastuff.gyromaze.core.WallList;
+import javastuff.gyromaze.core.World;
 
 /** 
  * Main game activity.
  * Holds Engine and necessary managers.
  */
 public class Game extends AppCompatActivity {
-    enum Side {top, bottom, right, left}
-
     //game engine
     private Engine engine;
     private SensorManager sensorMngr;
     private Display display;
     private AlertDialog pauseMenu;
     private AlertDialog gameOver;
-    private MainMenu.Difficulty difficulty;
+    private Difficulty difficulty;
     private int highscore;
     /** 
      * Activity created
@@ -48,11 +82,10 @@ public class Game extends AppCompatActivity {
         sensorMngr = (SensorManager) getSystemService(SENSOR_SERVICE);
         display = ((WindowManager) getSystemService(WINDOW_SERVICE)).getDefaultDisplay();
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-        difficulty = MainMenu.Difficulty.values()[getIntent().getExtras().getInt("difficulty")];
+        difficulty = Difficulty.values()[getIntent().getExtras().getInt("difficulty")];
 
         // initialize engine
         engine = new Engine(this);
-        engine.setBackgroundResource(R.drawable.texture);
         setContentView(engine);
 
         // build pause menu
@@ -123,6 +156,7 @@ public class Game extends AppCompatActivity {
     public void onDestroy()
     {
         super.onDestroy();
+        engine.stop();
         pauseMenu.dismiss();
         gameOver.dismiss();
     }
@@ -132,11 +166,11 @@ public class Game extends AppCompatActivity {
      */
     public void end()
     {
-        if (highscore < engine.score)
+        if (highscore < engine.world.score)
         {
             // save new highscore
             SharedPreferences.Editor editor = getSharedPreferences("score_value_unique_key", Context.MODE_PRIVATE).edit();
-            editor.putInt("score", engine.score);
+            editor.putInt("score", engine.world.score);
             editor.commit();
         }
         finish();
@@ -155,71 +189,130 @@ public class Game extends AppCompatActivity {
 
     /**
      * Game engine.
-     * Captures sensor's values, on each frame updates ball's position and resolves collisions with coins, holes, walls and boundaries.
+     * Captures sensor's values and drives the game world with them from a simulation thread.
+     * Draws the whole scene onto its surface from a render thread.
      */
-    class Engine extends FrameLayout implements SensorEventListener {
+    class Engine extends SurfaceView implements SensorEventListener, SurfaceHolder.Callback {
         /**
          * Number of cells
          */
         private final int cellsX, cellsY;
+        /**
+         * Endless maze instead of levels
+         */
+        private final boolean endless;
+        /**
+         * Frame and step times shown over the game, null unless asked for
+         */
+        private final PerformanceMonitor monitor;
+        /**
+         * Inputs of the game kept for a replay, null unless asked for
+         */
+        private final Recording recording;
+        /**
+         * Walls, holes, coins and the ball with their physics
+         */
+        private final World world;
         /**
          * Game state
          */
-        public boolean Paused = false;
+        public volatile boolean Paused = false;
         /**
-         * Acceleration sensor
+         * Ball fell into a hole
          */
-        private final Sensor accel;
+        private volatile boolean over = false;
         /**
-         * Captured acceleration values
+         * Acceleration sensor and gyroscope, null if the device has none
+         */
+        private final Sensor accel, gyro;
+        /**
+         * Longest time (in microseconds) the sensors may hold samples back and deliver them in a batch
+         */
+        private final int sensorLatency;
+        /**
+         * Sensor samples passed from the sensor thread to the simulation, holds a few batches
+         */
+        private final SensorRing samples = new SensorRing(256);
+        /**
+         * Turns the samples into a steady tilt, owned by the simulation thread
+         */
+        private final TiltFilter tilt = new TiltFilter(ACCEL_SMOOTHING, GYRO_SMOOTHING);
+        /**
+         * Tilt given to the physics steps, owned by the simulation thread
          */
         private Vector sensor;
         /**
-         * Screen resolution
+         * Ball states passed from the simulation to the renderer
+         */
+        private final SnapshotBuffer snapshots = new SnapshotBuffer();
+        /**
+         * Simulation thread, started with the first surface
          */
-        private float screenWidth,screenHeight;
+        private Simulation simulation;
         /**
-         * THE ball
+         * Render thread, lives as long as the surface
          */
-        private Ball ball;
+        private Renderer renderer;
         /**
-         * Random maze generator
+         * Size of the drawn area
          */
-        private MazeGenerator gen;
+        private final int width, height;
         /**
-         * Existing walls
+         * Static part of the level (floor, walls and holes) around the view
          */
-        private Wall verticalWalls[][], horizontalWalls[][];
+        private volatile MazeImage maze;
         /**
-         * Game info deduced from current resolution
+         * Builds upcoming levels in the background
          */
-        private final int horizontalWallHWidth,verticalWallHeight,wallSize,cellSize;
-        private final float circleDiameter;
+        private final ExecutorService loader = Executors.newSingleThreadExecutor();
         /**
-         * Collectible coins
+         * Next level, built while the current one is played
          */
-        private Coin coins[][];
+        private Future<Prepared> next;
         /**
-         * Holes, game's over if hit
+         * Shared decoded images, sprites are already scaled to their on-screen size
          */
-        private Hole holes[][];
+        private final Bitmap texture, wallImage, holeSprite, coinSprite, ballSprite;
         /**
-         * Last step time
+         * Paint used to scale images when the maze is drawn
          */
-        private long lastTime = 0;
+        private final Paint filter = new Paint(Paint.FILTER_BITMAP_FLAG);
         /**
-         * Current score
+         * Paint filling walls of any length with the wall image
          */
-        int score = 0;
+        private final Paint wallPaint = new Paint();
         /**
-         * Number of coins left
+         * Fixed physics step (240 Hz) in seconds
          */
-        int coinCount = 0;
+        private static final double STEP = 1.0 / 240;
         /**
-         * Difficulty multipliers
+         * Maximum number of physics steps per frame, the rest of a long stall is dropped
          */
-        float holeSize,holeChance;
-        int scoreMultiplier;
+        private static final int MAX_STEPS = 12;
+        /**
+         * Sensor sampling period (100 Hz) and default batching latency in microseconds
+         */
+        private static final int SAMPLING = 10000, SENSOR_LATENCY = 20000;
+        /**
+         * Smoothing of the accelerometer alone and with a gyroscope in seconds, see TiltFilter
+         */
+        private static final double ACCEL_SMOOTHING = 0.04, GYRO_SMOOTHING = 0.3;
+        /**
+         * Number of cell rows/columns that fit on the screen, larger mazes scroll
+         */
+        private static final int VISIBLE_X = 10, VISIBLE_Y = 8;
+        /**
+         * Wait before asking again for a surface that can not be drawn on yet, in nanoseconds
+         */
+        private static final long CANVAS_RETRY = 10000000;
+        /**
+         * Cells drawn around the view into the maze image, so it is not redrawn on every move
+         */
+        private static final int MARGIN = 2;
+        /**
+         * Ball position before the last physics step, used to interpolate the drawn position
+         */
+        private float prevX, prevY;
 
         @SuppressLint("ClickableViewAccessibility")
         /**
@@ -227,6 +320,7 @@ public class Game extends AppCompatActivity {
          */
         public Engine(Context context) {
             super(context);
+            getHolder().addCallback(this);
             this.setOnTouchListener(new OnTouchListener() {
                 @Override
                 public boolean onTouch(View v, MotionEvent event) {
@@ -237,411 +331,293 @@ public class Game extends AppCompatActivity {
                 }
             });
 
-            // initialize variables
-            cellsX = 10;
-            cellsY = 8;
-            verticalWalls = new Wall[cellsX][cellsY-1];
-            horizontalWalls= new Wall[cellsX-1][cellsY];
-            coins = new Coin[cellsX][cellsY];
-            holes = new Hole[cellsX][cellsY];
+            // initialize variables, the maze fills the screen unless a larger one is asked for
+            endless = getIntent().getExtras().getBoolean("endless");
+            cellsX = endless ? ChunkedLevel.SIZE : getIntent().getExtras().getInt("cellsX", VISIBLE_X);
+            cellsY = endless ? ChunkedLevel.SIZE : getIntent().getExtras().getInt("cellsY", VISIBLE_Y);
             accel = sensorMngr.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            gyro = sensorMngr.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+            sensorLatency = getIntent().getExtras().getInt("sensorLatency", SENSOR_LATENCY);
             sensor = new Vector(0,0);
 
             DisplayMetrics metrics = new DisplayMetrics();
             getWindowManager().getDefaultDisplay().getRealMetrics(metrics);
 
-            BitmapFactory.Options opts = new BitmapFactory.Options();
-            opts.inPreferredConfig = Bitmap.Config.RGB_565;
-
-            // needed minimum size for cell so the ball can fit in
-            cellSize = Math.min(metrics.widthPixels / 12, metrics.heightPixels / 12);
-
-            //possible width of vertical wall and height of horizontal wall
-            int verticalWallWidth = (metrics.widthPixels - cellsY * cellSize) / (cellsY - 1);
-            int horizontalWallHeight = (metrics.heightPixels - cellsX * cellSize) / (cellsX - 1);
-            // find min from them as unified "thickness" of the wall
-            wallSize = Math.min(verticalWallWidth, horizontalWallHeight);
-
-            // recompute height and width
-            verticalWallHeight = (metrics.heightPixels - (cellsX - 1)*wallSize)/cellsX;
-            horizontalWallHWidth = (metrics.widthPixels - (cellsY - 1)*wallSize)/cellsY;
-
-            circleDiameter = Math.min(metrics.heightPixels / 25, metrics.widthPixels / 25) / 2;
-
-            // set difficulty
-            switch (difficulty)
-            {
-                case Easy:
-                    holeSize = 1.0f;
-                    holeChance = 0.1f;
-                    scoreMultiplier = 1;
-                    break;
-                case Medium:
-                    holeSize = 1.1f;
-                    holeChance = 0.2f;
-                    scoreMultiplier = 2;
-                    break;
-                case Hard:
-                    holeSize = 1.2f;
-                    holeChance = 0.3f;
-                    scoreMultiplier = 3;
-                    break;
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+
+            // same seed replays the same levels, a fresh one is used unless asked for
+            long seed = getIntent().getExtras().getLong("seed", System.nanoTime());
+            world = new World(cellsX, cellsY, width, height,
+                    Math.min(cellsX, VISIBLE_X), Math.min(cellsY, VISIBLE_Y), difficulty, seed);
+            // mazes are carved by the backtracker unless another algorithm is asked for
+            world.algorithm = MazeAlgorithm.values()[getIntent().getExtras().getInt("algorithm", 0)];
+            // huge mazes are carved in tiles on all cores unless fewer threads are asked for, 0 carves them on the loader
+            int tileThreads = getIntent().getExtras().getInt("tileThreads", Runtime.getRuntime().availableProcessors());
+            if (tileThreads > 0 && Build.VERSION.SDK_INT >= 21)
+                world.pool = new ForkJoinPool(tileThreads);
+            if (getIntent().getExtras().getBoolean("record")) {
+                recording = new Recording(cellsX, cellsY, width, height,
+                        Math.min(cellsX, VISIBLE_X), Math.min(cellsY, VISIBLE_Y), difficulty, world.algorithm, seed, endless);
+                world.recording = recording;
+            } else {
+                recording = null;
+            }
+            // large levels are kept on disk, a replayed seed opens them without generating
+            world.setLevelCache(new LevelCache(new File(getCacheDir(), "levels")));
+            if (getIntent().getExtras().getBoolean("hud")) {
+                monitor = new PerformanceMonitor(world.cellSize / 4f);
+                world.profile = monitor.profile;
+            } else {
+                monitor = null;
             }
 
+            // images are decoded once per process in the size needed, opaque ones without alpha
+            int wallLength = Math.max(world.verticalWallHeight, world.horizontalWallHWidth) + 2 * world.wallSize;
+            texture = BitmapCache.opaque(getResources(), R.drawable.texture, width, height);
+            wallImage = BitmapCache.opaque(getResources(), R.drawable.wall, wallLength, wallLength);
+            wallPaint.setShader(new BitmapShader(wallImage, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+            holeSprite = BitmapCache.sprite(getResources(), R.drawable.hole, (int) (world.circleDiameter * world.holeSize) * 2);
+            coinSprite = BitmapCache.sprite(getResources(), R.drawable.coin, (int) world.circleDiameter * 2);
+            ballSprite = BitmapCache.sprite(getResources(), R.drawable.ball, (int) world.circleDiameter * 2);
+
             //initialize walls, holes and coins
-            initialize();
+            Prepared first = prepare();
+            world.initialize(first.level);
+            maze = first.maze;
+            prepareNext();
         }
 
         /**
-         * (Re)Initializes walls, holes and coins
+         * Level ready to be swapped in together with the image of its maze
          */
-        private void initialize()
-        {
-            // clear objects
-            removeAllViews();
-            // intialize holes
-            for (int i = 0; i < holes.length; i++)
-            {
-                for (int j = 0; j < holes[i].length; j++)
-                {
-                    if (Math.random() >= holeChance || (i == 0 && j == 0))
-                    {
-                        holes[i][j] = null;
-                        continue;
-                    }
-
-                    float dispX = (float)Math.random() * cellSize + 1 - cellSize/2;
-                    float dispY = (float)Math.random() * cellSize + 1 - cellSize/2;
-
-                    holes[i][j] = new Hole(getContext(),circleDiameter*holeSize,
-                            j * (horizontalWallHWidth + wallSize) + horizontalWallHWidth/2f + dispX,
-                            i * (verticalWallHeight + wallSize) + verticalWallHeight/2f + dispY);
-                    Hole h = holes[i][j];
-                    h.setBackgroundResource(R.drawable.hole);
-                    h.setLayerType(LAYER_TYPE_HARDWARE, null);
-                    addView(h, new ViewGroup.LayoutParams((int)h.diameter*2, (int)h.diameter*2));
-
-                    h.setTranslationX(h.X - h.diameter);
-                    h.setTranslationY(h.Y - h.diameter);
-                }
-            }
-
-            // initialize coins
-            for (int i = 0; i < coins.length; i++) {
-                for (int j = 0; j < coins[i].length; j++) {
-                    if (Math.random() < 0.5) {
-                        coins[i][j] = null;
-                        continue;
-                    }
-
-                    float dispX = (float) Math.random() * cellSize / 5 + 1 - cellSize / 10;
-                    float dispY = (float) Math.random() * cellSize / 5 + 1 - cellSize / 10;
-
-                    coins[i][j] = new Coin(getContext(),(int)circleDiameter,
-                            j * (horizontalWallHWidth + wallSize) + horizontalWallHWidth / 2f + dispX,
-                            i * (verticalWallHeight + wallSize) + verticalWallHeight / 2f + dispY);
-                    Coin c = coins[i][j];
-                    c.setBackgroundResource(R.drawable.coin);
-                    c.setLayerType(LAYER_TYPE_HARDWARE, null);
-                    addView(c, new ViewGroup.LayoutParams(c.diameter * 2, c.diameter * 2));
-
-                    c.setTranslationX(c.X - c.diameter);
-                    c.setTranslationY(c.Y - c.diameter);
-
-                    coinCount++;
-                }
-            }
+        private class Prepared {
+            final Grid level;
+            final MazeImage maze;
 
-            // generate maze
-            gen = new MazeGenerator(cellsX,cellsY);
-            gen.Generate(difficulty);
-
-            // initialize walls
-            for (int i = 0; i < cellsX; i++) {
-                for (int j = 0; j < cellsY; j++) {
-                    // create wall according to the generator
-                    if (j < cellsY - 1) {
-                        if (!gen.verticalWalls[i][j]){
-                            // addition so that the maze looks smooth
-                            int add = (i > 0 && (verticalWalls[i - 1][j] != null || horizontalWalls[i - 1][j] != null)) ? 0 : wallSize;
-                            // initialize
-                            verticalWalls[i][j] = new Wall(getContext(),
-                                    j * (horizontalWallHWidth + wallSize) + horizontalWallHWidth,
-                                    i * (verticalWallHeight + wallSize) - add,
-                                    wallSize,
-                                    verticalWallHeight + wallSize + add);
-                            verticalWalls[i][j].setBackgroundResource(R.drawable.wall);
-                            verticalWalls[i][j].setLayerType(LAYER_TYPE_HARDWARE, null);
-                            addView(verticalWalls[i][j], new ViewGroup.LayoutParams(wallSize, verticalWallHeight + wallSize + add));
-                            // move the wall to its position
-                            verticalWalls[i][j].setTranslationX(verticalWalls[i][j].x);
-                            verticalWalls[i][j].setTranslationY(verticalWalls[i][j].y);
-                        }
-                        else
-                            verticalWalls[i][j] = null;
-                    }
-                    if (i < cellsX - 1) {
-                        if (!gen.horizontalWalls[i][j]) {
-                            int add = (j < cellsY - 1 && verticalWalls[i][j] != null) ? 0 : wallSize;
-                            horizontalWalls[i][j] = new Wall(getContext(),
-                                    j * (horizontalWallHWidth + wallSize),
-                                    i * (verticalWallHeight + wallSize) + verticalWallHeight,
-                                    horizontalWallHWidth + add,
-                                    wallSize);
-
-                            horizontalWalls[i][j].setBackgroundResource(R.drawable.wall);
-                            horizontalWalls[i][j].setLayerType(LAYER_TYPE_HARDWARE, null);
-                            addView(horizontalWalls[i][j], new ViewGroup.LayoutParams(horizontalWallHWidth + add, wallSize));
-
-                            horizontalWalls[i][j].setTranslationX(horizontalWalls[i][j].x);
-                            horizontalWalls[i][j].setTranslationY(horizontalWalls[i][j].y);
-                        }
-                        else
-                            horizontalWalls[i][j] = null;
-                    }
-                }
+            Prepared(Grid level, MazeImage maze) {
+                this.level = level;
+                this.maze = maze;
             }
-
-            // initialize ball
-            ball = new Ball(getContext(),(int)circleDiameter);
-            ball.setBackgroundResource(R.drawable.ball);
-            ball.setLayerType(LAYER_TYPE_HARDWARE, null);
-            addView(ball, new ViewGroup.LayoutParams(ball.diameter*2,ball.diameter*2));
-        }
-
-        private float clamp(float val, float min, float max) {
-            return Math.max(min, Math.min(max, val));
-        }
-
-        private double distance(Vector v, Vector w) {
-            return Math.pow(v.x - w.x,2) + Math.pow(v.y - w.y,2);
         }
 
         /**
-         * Computes closest distance to segment from a point
-         * @param P Point
-         * @param A Segment start
-         * @param B Segment end
-         * @return Distance to the segment AB from point P
+         * Generates the next level and draws the part of it the ball starts in.
+         * An endless level is only started here, its chunks are built as they are looked at.
+         * @return Level ready to be swapped in
          */
-        private double closestDistanceToSegment(Vector P, Vector A, Vector B) {
-            double l2 = distance(A, B);
-            if (l2 == 0) return distance(P, A);
-            double t = ((P.x - A.x) * (B.x - A.x) + (P.y - A.y) * (B.y - A.y)) / l2;
-            t = Math.max(0, Math.min(1, t));
-            return Math.sqrt(distance(P, new Vector(A.x + (float)t * (B.x - A.x), A.y + (float)t * (B.y - A.y)) ));
+        private Prepared prepare()
+        {
+            Grid level = endless ? world.endlessLevel() : world.nextLevel();
+            MazeImage image = new MazeImage(level);
+            drawMaze(image, 0, 0);
+            return new Prepared(level, image);
         }
 
         /**
-         * Decides whether the wall found is inner or outer wall
-         * @param w Wall we want to check
-         * @param s What side we want to check
-         * @param second The second side that is to decide
-         * @return True if the wall is inner, false otherwise
+         * Starts preparing the level after the current one in the background
          */
-        private boolean isWallCovered(Wall w, Side s, Side second)
+        private void prepareNext()
         {
-            for (int i = 0; i < verticalWalls.length; i++) {
-                for (int j = 0; j < verticalWalls[i].length; j++) {
-                    if (verticalWalls[i][j] != null && verticalWalls[i][j].x == w.x && verticalWalls[i][j].y == w.y)
-                    {
-                        if (i == 0 || (i == verticalWalls.length - 1)) return false;
-                        // unique rules adjusted to the maze layout
-                        switch (s) {
-                            case top:
-                                return (verticalWalls[i-1][j] != null || horizontalWalls[i-1][j] != null);
-                            case bottom:
-                                return verticalWalls[i+1][j] != null;
-                            case left:
-                                return horizontalWalls[i][j] != null && second == Side.bottom;
-                            case right:
-                                return horizontalWalls[i][j + 1] != null;
-                        }
-                    }
-                }
-            }
-            for (int i = 0; i < horizontalWalls.length; i++) {
-                for (int j = 0; j < horizontalWalls[i].length; j++) {
-                    if (horizontalWalls[i][j] != null && horizontalWalls[i][j].x == w.x && horizontalWalls[i][j].y == w.y){
-                        if (j == 0 || j == horizontalWalls[i].length - 1) return false;
-                        switch (s) {
-                            case top:
-                                return false;
-                            case bottom:
-                                return verticalWalls[i+1][j] != null && second == Side.right;
-                            case left:
-                                return horizontalWalls[i][j-1] != null || verticalWalls[i][j-1] != null;
-                            case right:
-                                return horizontalWalls[i][j + 1] != null || verticalWalls[i][j] != null;
-                        }
-                    }
+            next = loader.submit(new Callable<Prepared>() {
+                @Override
+                public Prepared call() {
+                    return prepare();
                 }
-            }
-            return false;
+            });
         }
 
         /**
-         * Returns side with which we collided
-         * Computes shortest distance from the old ball's position, decides which side of the wall is the closest
-         * Inner walls raise a problem as the should not be handled as real walls, but they exist and the shortest distance might point to them
-         * In that case, we try to check whether the checked wall is hidden or not
-         * @param w Wall that we intersected with
-         * @return Side of intersection
+         * Swaps in the prepared level, normally it is ready long before it is needed
          */
-        private Side getCollisionSide(Wall w)
+        private void nextLevel()
         {
-            Vector ballPos = new Vector(ball.oldX,ball.oldY);
-
-            // check one by one
-            // left side
-            Side closest = Side.left;
-            // minimum distance to left side
-            double min = closestDistanceToSegment(ballPos,new Vector(w.x,w.y), new Vector(w.x,w.y + w.height));
-            // current positions of wall segment
-            //right side
-            Vector currentWallStart = new Vector(w.x + w.width,w.y);
-            Vector currentWallEnd = new Vector(w.x + w.width,w.y + w.height);
-            double dist = closestDistanceToSegment(ballPos, currentWallStart,currentWallEnd);
-            if (dist == min)
-                return (isWallCovered(w, Side.right, closest) ? closest : Side.right);
-            if (dist < min)
-            {
-                min = dist;
-                closest = Side.right;
-            }
-            // top side
-            currentWallStart = new Vector(w.x,w.y);
-            currentWallEnd = new Vector(w.x + w.width,w.y);
-            dist =closestDistanceToSegment(ballPos, currentWallStart,currentWallEnd);
-            if (dist == min)
-                return (isWallCovered(w, Side.top, closest) ? closest : Side.top);
-            if (dist < min)
-            {
-                min = dist;
-                closest = Side.top;
+            Prepared prepared;
+            try {
+                prepared = next.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Next level could not be built", e);
             }
-            // bottom side
-            currentWallStart = new Vector(w.x,w.y + w.height);
-            currentWallEnd = new Vector(w.x + w.width,w.y + w.height);
-            dist = closestDistanceToSegment(ballPos, currentWallStart,currentWallEnd);
-            if (dist == min)
-                return (isWallCovered(w, Side.bottom, closest) ? closest : Side.bottom);
-            if (dist < min)
-                closest = Side.bottom;
-            return closest;
+            world.initialize(prepared.level);
+            maze = prepared.maze;
+            prevX = prevY = 0;
+            prepareNext();
         }
 
         /**
-         * Checks whether the ball intersects with a wall
-         * @param w Wall to check
-         * @return True if they intersect, false otherwise
+         * Image of floor, walls and holes of a block of cells.
+         * A maze that fits the screen is drawn whole once, a larger one only around the view
+         * and redrawn by the renderer when the view gets out of it.
          */
-        private boolean intersects(Wall w)
-        {
-            // closest point to the ball from the wall
-            Vector closest = new Vector(clamp(ball.X, w.x, w.x + w.width),clamp(ball.Y, w.y, w.y + w.height));
-
-            // distance from the circle to this point
-            Vector dist = new Vector (ball.X - closest.x, ball.Y - closest.y);
+        private class MazeImage {
+            final Grid level;
+            final Bitmap bitmap;
+            final Canvas canvas;
+            /**
+             * Number of cells the image can hold
+             */
+            final int rows, columns;
+            /**
+             * First cell in the image
+             */
+            int fromRow, fromColumn;
+
+            MazeImage(Grid level) {
+                this.level = level;
+                rows = Math.min(cellsX, height / world.rowPitch + 2 + 2 * MARGIN);
+                columns = Math.min(cellsY, width / world.columnPitch + 2 + 2 * MARGIN);
+                // whole maze also covers what is left over at the edges by the cell size
+                bitmap = Bitmap.createBitmap(
+                        columns == cellsY ? world.width : columns * world.columnPitch,
+                        rows == cellsX ? world.height : rows * world.rowPitch,
+                        Bitmap.Config.RGB_565);
+                canvas = new Canvas(bitmap);
+            }
 
-            // check if the distance is smaller than ball's radius
-            return Math.pow(dist.x,2) + Math.pow(dist.y,2) < (Math.pow(ball.diameter,2));
+            /**
+             * @return True if all cells from the given range are in the image
+             */
+            boolean covers(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+                return firstRow >= fromRow && lastRow < fromRow + rows
+                        && firstColumn >= fromColumn && lastColumn < fromColumn + columns;
+            }
         }
 
         /**
-         * Resolves ball collision with specific wall
-         * @param w Wall to resolve
+         * Draws floor, walls and holes of a block of cells into the image.
+         * Nothing of it moves, so the renderer only copies it on each frame.
+         * @param image Image to draw into
+         * @param fromRow First row of the block, moved so the block stays in the maze
+         * @param fromColumn First column of the block, moved so the block stays in the maze
          */
-        private void wallCollision(Wall w)
+        private void drawMaze(MazeImage image, int fromRow, int fromColumn)
         {
-            // no wall here
-            if (w == null)
-                return;
-            // check for collision
-            if (intersects(w)) {
-                // there is a collision, find out from what side
-                Side s = getCollisionSide(w);
-                // update ball accordingly
-                switch (s) {
-                    case top:
-                        ball.Y = w.y - ball.diameter - 1;
-                        ball.velY = 0;
-                        break;
-                    case bottom:
-                        ball.Y = w.y + w.height + ball.diameter + 1;
-                        ball.velY = 0;
-                        break;
-                    case left:
-                        ball.X = w.x - ball.diameter - 1;
-                        ball.velX = 0;
-                        break;
-                    case right:
-                        ball.X = w.x + w.width + ball.diameter + 1;
-                        ball.velX = 0;
-                        break;
+            Grid level = image.level;
+            fromRow = Math.max(0, Math.min(fromRow, cellsX - image.rows));
+            fromColumn = Math.max(0, Math.min(fromColumn, cellsY - image.columns));
+            image.fromRow = fromRow;
+            image.fromColumn = fromColumn;
+
+            Canvas canvas = image.canvas;
+            int originX = fromColumn * world.columnPitch, originY = fromRow * world.rowPitch;
+            int imageWidth = image.bitmap.getWidth(), imageHeight = image.bitmap.getHeight();
+            RectF dst = new RectF();
+
+            // floor is laid in screen sized tiles fixed to the world, so it does not move when the block does
+            for (int y = originY / height * height; y < originY + imageHeight; y += height)
+                for (int x = originX / width * width; x < originX + imageWidth; x += width) {
+                    dst.set(x - originX, y - originY, x - originX + width, y - originY + height);
+                    canvas.drawBitmap(texture, null, dst, filter);
                 }
+
+            // walls and holes of the cells around the block may reach into it
+            int toRow = Math.min(fromRow + image.rows, cellsX - 1);
+            int toColumn = Math.min(fromColumn + image.columns, cellsY - 1);
+            // walls are merged into long rectangles, the texture repeats along them from the world's origin
+            WallList walls = world.walls(level, fromRow - 1, toRow, fromColumn - 1, toColumn, new WallList());
+            canvas.save();
+            canvas.translate(-originX, -originY);
+            for (int k = 0; k < walls.size(); k++) {
+                Wall w = walls.get(k);
+                canvas.drawRect(w.x, w.y, w.x + w.width, w.y + w.height, wallPaint);
             }
+            canvas.restore();
+            Hole h = new Hole(0, 0, 0);
+            for (int i = Math.max(fromRow - 1, 0); i <= toRow; i++)
+                for (int j = Math.max(fromColumn - 1, 0); j <= toColumn; j++)
+                    if (world.hole(level, i, j, h) != null)
+                        canvas.drawBitmap(holeSprite, h.X - h.diameter - originX, h.Y - h.diameter - originY, null);
         }
 
         /**
-         * Updates ball and resolves collisions
+         * Advances the world by one step and reacts to its outcome
          * @param sensorX X value from accelerometer
          * @param sensorY Y value from accelerometer
          * @param delta Time delta
          */
         private void update(float sensorX, float sensorY, double delta) {
-            // update ball
-            ball.reposition(sensorX, sensorY, delta);
-            // check collisions with vertical walls after update
-            for (int i = 0; i < verticalWalls.length; i++) {
-                for (int j = 0; j < verticalWalls[i].length; j++) {
-                    wallCollision(verticalWalls[i][j]);
-                }
-            }
-            // horizontal walls
-            for (int i = 0; i < horizontalWalls.length; i++) {
-                for (int j = 0; j < horizontalWalls[i].length; j++) {
-                    wallCollision(horizontalWalls[i][j]);
-                }
-            }
-            // coins
-            for (int i = 0; i < coins.length; i++) {
-                for (int j = 0; j < coins[i].length; j++) {
-                    if (coins[i][j] != null && coins[i][j].getVisibility() != View.GONE && coins[i][j].collides(ball)) {
-                        // coin is spawned, still there and collides with ball, hide it and increase score/decrease coin count
-                        coins[i][j].setVisibility(View.GONE);
-                        score+=scoreMultiplier;
-                        coinCount--;
-                        if (coinCount == 0) {
-                            initialize();
-                            ball.X = ball.Y = 0;
+            switch (world.step(sensorX, sensorY, delta)) {
+                case cleared:
+                    // next level has been built in the background, just swap it in
+                    nextLevel();
+                    break;
+                case fallen:
+                    // stop the simulation (the ball is not drawn anymore) and say that game's over
+                    over = true;
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            gameOver.setMessage("Your score: " + world.score + "\n" +
+                                                "Highscore: " + highscore);
+                            gameOver.show();
                         }
-                    }
-                }
-            }
-            // holes
-            for (int i = 0; i < holes.length; i++) {
-                for (int j = 0; j < holes[i].length; j++) {
-                    if (holes[i][j] != null && holes[i][j].collides(ball)) {
-                        // collided with ball, hide the ball and say that game's over
-                        ball.setVisibility(View.GONE);
-                        gameOver.setMessage("Your score: " + score + "\n" +
-                                            "Highscore: " + highscore);
-                        gameOver.show();
-                    }
-                }
+                    });
+                    break;
             }
-            // resolve boundary collisions
-            ball.boundaryCollisions(screenWidth, screenHeight);
         }
 
         /**
-         * Start the game by registering sensor listener
+         * Start the game by registering sensor listener.
+         * Samples may be batched by the sensor hub, the simulation integrates all of them.
          */
         public void unpause() {
             Paused = false;
             fullscreen();
-            sensorMngr.registerListener(this, accel, SensorManager.SENSOR_DELAY_GAME);
+            sensorMngr.registerListener(this, accel, SAMPLING, sensorLatency);
+            if (gyro != null)
+                sensorMngr.registerListener(this, gyro, SAMPLING, sensorLatency);
+            // the simulation and the renderer sleep while paused
+            if (simulation != null)
+                LockSupport.unpark(simulation);
+            if (renderer != null)
+                LockSupport.unpark(renderer);
+        }
+
+        /**
+         * Stops the simulation thread for good
+         */
+        public void stop() {
+            sensorMngr.unregisterListener(this);
+            loader.shutdownNow();
+            if (world.pool != null)
+                world.pool.shutdownNow();
+            if (simulation != null)
+                simulation.finish();
+            if (recording != null)
+                saveRecording();
+            if (monitor != null) {
+                // kept with the app's files, where they can be pulled from the device
+                File dir = getExternalFilesDir("performance");
+                try {
+                    monitor.export(dir != null ? dir : new File(getFilesDir(), "performance"),
+                            difficulty + (endless ? " endless" : " " + cellsX + "x" + cellsY));
+                } catch (IOException e) {
+                    Log.w("GyroMaze", "Performance data could not be written", e);
+                }
+            }
+        }
+
+        /**
+         * Writes the recorded game next to the app's files, where it can be pulled from the device and replayed
+         */
+        private void saveRecording() {
+            File dir = getExternalFilesDir("recordings");
+            if (dir == null)
+                dir = new File(getFilesDir(), "recordings");
+            File file = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".gmr");
+            recording.finish(world);
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs())
+                    throw new IOException("Can not create " + dir);
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                try {
+                    recording.write(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                Log.w("GyroMaze", "Recording could not be written", e);
+            }
         }
 
         /**
@@ -649,43 +625,66 @@ public class Game extends AppCompatActivity {
          */
         public void pause() {
             Paused = true;
-            pauseMenu.setMessage("Current score: " + engine.score + "\n" +
+            pauseMenu.setMessage("Current score: " + world.score + "\n" +
                     "Highscore: " + highscore + "\n" +
-                    "Difficulty: " + ((difficulty == MainMenu.Difficulty.Easy) ? "Easy" : (difficulty == MainMenu.Difficulty.Medium) ? "Medium" : "Hard"));
+                    "Difficulty: " + ((difficulty == Difficulty.Easy) ? "Easy" : (difficulty == Difficulty.Medium) ? "Medium" : "Hard"));
             pauseMenu.show();
             sensorMngr.unregisterListener(this);
         }
 
         @Override
         protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
-            screenWidth = width;
-            screenHeight = height;
+            // a maze that fits the screen keeps the ball in the view, a larger one scrolls with it
+            if (world.width <= this.width && world.height <= this.height)
+                world.setBounds(width, height);
+        }
+
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            // start the game
+            if (simulation == null) {
+                unpause();
+                simulation = new Simulation();
+                simulation.start();
+            }
+            renderer = new Renderer();
+            renderer.start();
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        }
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+            // surface must not be used after returning
+            renderer.finish();
+            renderer = null;
         }
 
         /**
-         * Accelerometer changes
+         * Accelerometer and gyroscope samples, turned to screen axes and queued for the simulation thread
          * @param event change
          */
         @Override
         public void onSensorChanged(SensorEvent event) {
-            if (event.sensor.getType() != Sensor.TYPE_ACCELEROMETER)
+            int type = event.sensor.getType();
+            if (type != Sensor.TYPE_ACCELEROMETER && type != Sensor.TYPE_GYROSCOPE)
                 return;
+            boolean rate = type == Sensor.TYPE_GYROSCOPE;
+            float[] v = event.values;
             switch (display.getRotation()) {
                 case Surface.ROTATION_0:
-                    sensor.x = event.values[0];
-                    sensor.y = event.values[1];
+                    samples.offer(rate, v[0], v[1], v[2], event.timestamp);
                     break;
                 case Surface.ROTATION_90:
-                    sensor.x = -event.values[1];
-                    sensor.y = event.values[0];
+                    samples.offer(rate, -v[1], v[0], v[2], event.timestamp);
                     break;
                 case Surface.ROTATION_180:
-                    sensor.x = -event.values[0];
-                    sensor.y = -event.values[1];
+                    samples.offer(rate, -v[0], -v[1], v[2], event.timestamp);
                     break;
                 case Surface.ROTATION_270:
-                    sensor.x = event.values[1];
-                    sensor.y = -event.values[0];
+                    samples.offer(rate, v[1], -v[0], v[2], event.timestamp);
                     break;
             }
         }
@@ -695,29 +694,180 @@ public class Game extends AppCompatActivity {
         }
 
         /**
-         * Used for updating ball's position
-         * @param canvas
+         * Draws one frame: cached maze, coins left and the ball interpolated between the last two steps.
+         * The camera follows the ball, only cells in the view are drawn.
+         * @param canvas Surface canvas
+         * @param camera View of the renderer
+         * @param coin Object to place coins in
          */
-        @Override
-        protected void onDraw(Canvas canvas) {
-            // start the game
-            if (lastTime == 0)
-                engine.unpause();
+        private void render(Canvas canvas, Camera camera, Coin coin) {
+            SnapshotBuffer.Snapshot s = snapshots.front();
+            float alpha = World.clamp((float) ((System.nanoTime() - s.time) / 1e9 / STEP), 0, 1);
+            float ballX = s.prevX + (s.x - s.prevX) * alpha, ballY = s.prevY + (s.y - s.prevY) * alpha;
+            camera.follow(world, ballX, ballY);
+            int firstRow = camera.firstRow(world), lastRow = camera.lastRow(world);
+            int firstColumn = camera.firstColumn(world), lastColumn = camera.lastColumn(world);
+
+            MazeImage image = maze;
+            if (!image.covers(firstRow, lastRow, firstColumn, lastColumn))
+                drawMaze(image, firstRow - MARGIN, firstColumn - MARGIN);
+            canvas.drawBitmap(image.bitmap,
+                    image.fromColumn * world.columnPitch - camera.x,
+                    image.fromRow * world.rowPitch - camera.y, null);
+
+            // coins may reach into the view from the next cell
+            Grid level = world.level;
+            for (int i = Math.max(firstRow - 1, 0); i <= Math.min(lastRow + 1, cellsX - 1); i++)
+                for (int j = Math.max(firstColumn - 1, 0); j <= Math.min(lastColumn + 1, cellsY - 1); j++)
+                    if (world.coin(level, i, j, coin) != null)
+                        canvas.drawBitmap(coinSprite, coin.X - coin.diameter - camera.x, coin.Y - coin.diameter - camera.y, null);
+
+            if (!over)
+                canvas.drawBitmap(ballSprite,
+                        ballX - world.circleDiameter - camera.x,
+                        ballY - world.circleDiameter - camera.y, null);
+
+            if (monitor != null)
+                monitor.draw(canvas);
+        }
+
+        /**
+         * Render thread.
+         * Draws frames onto the surface, posting a frame waits for the display.
+         * Draws one frame after the game is paused or over, then parks until it goes on.
+         */
+        private class Renderer extends Thread {
+            private volatile boolean running = true;
+
+            Renderer() {
+                super("Renderer");
+            }
+
+            /**
+             * Ends the thread and waits until it stops using the surface
+             */
+            void finish() {
+                running = false;
+                LockSupport.unpark(this);
+                boolean retry = true;
+                while (retry) {
+                    try {
+                        join();
+                        retry = false;
+                    } catch (InterruptedException e) {
+                        // try again
+                    }
+                }
+            }
+
+            @Override
+            public void run() {
+                SurfaceHolder holder = getHolder();
+                Camera camera = new Camera(width, height);
+                Coin coin = new Coin(0, 0, 0);
+                while (running) {
+                    Canvas canvas = holder.lockCanvas();
+                    if (canvas == null) {
+                        // surface not ready yet, try again a little later instead of spinning
+                        LockSupport.parkNanos(CANVAS_RETRY);
+                        continue;
+                    }
+                    // a change while the frame is drawn is shown by one more frame
+                    boolean still = Paused || over;
+                    long start = System.nanoTime();
+                    try {
+                        render(canvas, camera, coin);
+                    } finally {
+                        if (monitor != null)
+                            monitor.frame(start, System.nanoTime());
+                        holder.unlockCanvasAndPost(canvas);
+                    }
+                    // nothing moves while paused or over, the last frame stays until unpause() or finish()
+                    if (still)
+                        LockSupport.park(this);
+                }
+            }
+        }
 
-            // update time delta
-            long time = System.currentTimeMillis();
-            float delta = (time - lastTime) / 1000.f;
-            lastTime = time;
+        /**
+         * Simulation thread.
+         * Runs physics in fixed steps independent of the frame rate, filters sensor samples from the ring buffer
+         * and publishes ball states for drawing.
+         * Parks without a timeout while the game is paused or over, so it does not wake up 240 times a second for nothing.
+         */
+        private class Simulation extends Thread {
+            private volatile boolean running = true;
 
-            // if game is running
-            if (!Paused)
-                update(sensor.x, sensor.y, delta);
+            Simulation() {
+                super("Simulation");
+            }
 
-            // move the ball
-            ball.setTranslationX(ball.X - ball.diameter);
-            ball.setTranslationY(ball.Y - ball.diameter);
+            /**
+             * Ends the thread after the current step and waits for it
+             */
+            void finish() {
+                running = false;
+                interrupt();
+                boolean retry = true;
+                while (retry) {
+                    try {
+                        join();
+                        retry = false;
+                    } catch (InterruptedException e) {
+                        // try again
+                    }
+                }
+            }
 
-            invalidate();
+            @Override
+            public void run() {
+                long lastTime = System.nanoTime();
+                // elapsed time not yet simulated
+                double accumulator = 0;
+                while (running) {
+                    // nothing is simulated while paused or over, sleep until unpause() or finish() wakes the thread
+                    if (Paused || over) {
+                        LockSupport.park(this);
+                        lastTime = System.nanoTime();
+                        accumulator = 0;
+                        continue;
+                    }
+                    // collect elapsed time
+                    long time = System.nanoTime();
+                    accumulator += (time - lastTime) / 1e9;
+                    lastTime = time;
+
+                    // filter every sample that came since the last steps and drive them with the average
+                    while (samples.poll(tilt));
+                    tilt.average(sensor);
+
+                    // run as many fixed steps as fit in the elapsed time
+                    int steps = 0;
+                    while (accumulator >= STEP && steps < MAX_STEPS && !over) {
+                        prevX = world.ball.X;
+                        prevY = world.ball.Y;
+                        update(sensor.x, sensor.y, STEP);
+                        accumulator -= STEP;
+                        steps++;
+                    }
+                    // too far behind, drop the rest instead of catching up
+                    if (steps == MAX_STEPS)
+                        accumulator = Math.min(accumulator, STEP);
+
+                    if (steps > 0) {
+                        SnapshotBuffer.Snapshot s = snapshots.back();
+                        s.prevX = prevX;
+                        s.prevY = prevY;
+                        s.x = world.ball.X;
+                        s.y = world.ball.Y;
+                        s.time = time - (long) (accumulator * 1e9);
+                        snapshots.publish();
+                    }
+
+                    // wait for the next step
+                    LockSupport.parkNanos((long) ((STEP - accumulator) * 1e9));
+                }
+            }
         }
     }
 }
@@ -7,13 +7,14 @@ import android.os.Bundle;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.content.Context;
 
-public class MainMenu extends AppCompatActivity {
-    public enum Difficulty {Easy, Medium, Hard}
+import javastuff.gyromaze.core.Difficulty;
 
+public class MainMenu extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -78,8 +79,12 @@ public class MainMenu extends AppCompatActivity {
                 break;
         }
 
+        CheckBox endless = findViewById(R.id.endless_check);
+        CheckBox hud = findViewById(R.id.hud_check);
         Intent intent = new Intent(this, Game.class);
         intent.putExtra("difficulty", difficulty.ordinal());
+        intent.putExtra("endless", endless.isChecked());
+        intent.putExtra("hud", hud.isChecked());
         startActivity(intent);
     }
 
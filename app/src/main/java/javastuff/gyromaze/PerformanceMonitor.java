@@ -0,0 +1,172 @@
+package javastuff.gyromaze;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.os.Debug;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import javastuff.gyromaze.core.Histogram;
+import javastuff.gyromaze.core.StepProfile;
+
+/**
+ * Measures frames, physics steps, garbage collections and allocations of a game.
+ * Shows them in a small overlay and writes them as percentile distributions when the game ends,
+ * so frame times of different devices and builds can be compared.
+ */
+class PerformanceMonitor {
+    /**
+     * How often the overlay text is recomputed
+     */
+    private static final long REFRESH = 500_000_000L;
+
+    /**
+     * Times of physics steps, given to the world
+     */
+    final StepProfile profile = new StepProfile();
+    /**
+     * Time between frames and time spent drawing a frame, in nanoseconds
+     */
+    private final Histogram frames = new Histogram(), draws = new Histogram();
+    private long lastFrame, lastRefresh;
+    /**
+     * Runtime counters at the start and at the last refresh
+     */
+    private final long startGcs, startAllocated;
+    private long gcs, allocated;
+    /**
+     * Overlay lines, replaced as a whole on refresh
+     */
+    private String[] lines = new String[0];
+    private final Paint text = new Paint(Paint.ANTI_ALIAS_FLAG), background = new Paint();
+
+    PerformanceMonitor(float textSize) {
+        text.setColor(Color.WHITE);
+        text.setTextSize(textSize);
+        background.setColor(Color.BLACK);
+        background.setAlpha(160);
+        startGcs = gcs = runtimeStat("art.gc.gc-count");
+        startAllocated = allocated = runtimeStat("art.gc.bytes-allocated");
+    }
+
+    /**
+     * @return Value of a runtime counter, -1 where the system does not tell (before Android 6)
+     */
+    private static long runtimeStat(String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+            return -1;
+        String value = Debug.getRuntimeStat(name);
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records a frame, called by the render thread
+     * @param start When the frame's canvas was obtained
+     * @param drawn When drawing of the frame ended
+     */
+    void frame(long start, long drawn) {
+        if (lastFrame != 0)
+            frames.record(start - lastFrame);
+        lastFrame = start;
+        draws.record(drawn - start);
+    }
+
+    /**
+     * Draws the overlay in the top left corner, called by the render thread
+     * @param canvas Frame canvas
+     */
+    void draw(Canvas canvas) {
+        long now = System.nanoTime();
+        if (now - lastRefresh >= REFRESH) {
+            refresh(lastRefresh == 0 ? 0 : now - lastRefresh);
+            lastRefresh = now;
+        }
+        float lineHeight = text.getTextSize() * 1.2f;
+        String[] lines = this.lines;
+        canvas.drawRect(0, 0, text.getTextSize() * 18, lineHeight * (lines.length + 0.5f), background);
+        for (int i = 0; i < lines.length; i++)
+            canvas.drawText(lines[i], text.getTextSize() / 2, lineHeight * (i + 1), text);
+    }
+
+    /**
+     * Recomputes the overlay text
+     * @param elapsed Time since the last refresh, 0 on the first one
+     */
+    private void refresh(long elapsed) {
+        StepProfile.Phase[] phases = StepProfile.Phase.values();
+        String[] lines = new String[4 + phases.length];
+        lines[0] = String.format(Locale.US, "frame p50 %.1f p99 %.1f max %.1f ms",
+                frames.percentile(50) / 1e6, frames.percentile(99) / 1e6, frames.max() / 1e6);
+        lines[1] = String.format(Locale.US, "draw p50 %.1f p99 %.1f ms",
+                draws.percentile(50) / 1e6, draws.percentile(99) / 1e6);
+        lines[2] = String.format(Locale.US, "step p50 %d p99 %d us",
+                profile.steps.percentile(50) / 1000, profile.steps.percentile(99) / 1000);
+        for (int i = 0; i < phases.length; i++)
+            lines[3 + i] = String.format(Locale.US, "  %s p99 %d us", phases[i], profile.phases[i].percentile(99) / 1000);
+
+        long gcs = runtimeStat("art.gc.gc-count"), allocated = runtimeStat("art.gc.bytes-allocated");
+        if (gcs < 0 || allocated < 0 || elapsed == 0)
+            lines[lines.length - 1] = gcs < 0 ? "gc n/a" : "gc " + (gcs - startGcs);
+        else
+            lines[lines.length - 1] = String.format(Locale.US, "gc %d, alloc %d KB/s",
+                    gcs - startGcs, (long) ((allocated - this.allocated) / 1024 / (elapsed / 1e9)));
+        this.gcs = gcs;
+        this.allocated = allocated;
+        this.lines = lines;
+    }
+
+    /**
+     * Writes all distributions into a new directory, one HdrHistogram style file for each and a summary
+     * @param dir Parent directory
+     * @param label Settings of the game, written into the summary
+     * @throws IOException If the files can not be written
+     */
+    void export(File dir, String label) throws IOException {
+        File session = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()));
+        if (!session.isDirectory() && !session.mkdirs())
+            throw new IOException("Can not create " + session);
+
+        write(new File(session, "frames.hgrm"), frames, 1e6);
+        write(new File(session, "draws.hgrm"), draws, 1e6);
+        write(new File(session, "steps.hgrm"), profile.steps, 1e3);
+        for (StepProfile.Phase phase : StepProfile.Phase.values())
+            write(new File(session, "step-" + phase + ".hgrm"), profile.phases[phase.ordinal()], 1e3);
+
+        PrintWriter out = new PrintWriter(new FileWriter(new File(session, "summary.txt")));
+        try {
+            out.println("build " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ")");
+            out.println("device " + Build.MANUFACTURER + " " + Build.MODEL + ", Android " + Build.VERSION.SDK_INT);
+            out.println("game " + label);
+            out.println(String.format(Locale.US, "frames %d, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    frames.count(), frames.percentile(50) / 1e6, frames.percentile(99) / 1e6,
+                    frames.percentile(99.9) / 1e6, frames.max() / 1e6));
+            out.println(String.format(Locale.US, "steps %d, p50 %d us, p99 %d us",
+                    profile.steps.count(), profile.steps.percentile(50) / 1000, profile.steps.percentile(99) / 1000));
+            if (gcs >= 0)
+                out.println("gc " + (gcs - startGcs) + ", allocated " + (allocated - startAllocated) / 1024 + " KB");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(File file, Histogram histogram, double scale) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            histogram.write(out, scale);
+        } finally {
+            out.close();
+        }
+    }
+}
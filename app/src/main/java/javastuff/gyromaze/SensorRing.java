@@ -0,0 +1,78 @@
+package javastuff.gyromaze;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javastuff.gyromaze.core.TiltFilter;
+
+/**
+ * Lock-free ring buffer of timestamped accelerometer and gyroscope samples.
+ * Exactly one thread may offer (sensor thread) and exactly one may poll (simulation thread).
+ */
+class SensorRing {
+    private final boolean[] gyros;
+    private final float[] xs, ys, zs;
+    private final long[] times;
+    private final int mask;
+    /**
+     * Next slot to write, advanced by producer only
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Next slot to read, advanced by consumer only
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity Number of samples held, must be a power of two
+     */
+    SensorRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        gyros = new boolean[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        zs = new float[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Stores a sample, called by the producer
+     * @param gyro Gyroscope (true) or accelerometer sample
+     * @param time Timestamp of the sample in nanoseconds
+     * @return False if the buffer is full and the sample was dropped
+     */
+    boolean offer(boolean gyro, float x, float y, float z, long time) {
+        long h = head.get();
+        if (h - tail.get() == xs.length)
+            return false;
+        int i = (int) h & mask;
+        gyros[i] = gyro;
+        xs[i] = x;
+        ys[i] = y;
+        zs[i] = z;
+        times[i] = time;
+        // publish the slot after it is written
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest sample, called by the consumer
+     * @param filter Receives the sample
+     * @return False if there was no sample
+     */
+    boolean poll(TiltFilter filter) {
+        long t = tail.get();
+        if (t == head.get())
+            return false;
+        int i = (int) t & mask;
+        if (gyros[i])
+            filter.gyroscope(xs[i], ys[i], zs[i], times[i]);
+        else
+            filter.accelerometer(xs[i], ys[i], zs[i], times[i]);
+        // free the slot after it is read
+        tail.lazySet(t + 1);
+        return true;
+    }
+}
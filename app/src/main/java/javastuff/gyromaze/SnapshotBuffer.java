@@ -0,0 +1,66 @@
+package javastuff.gyromaze;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands ball states from the simulation thread to the renderer without locks.
+ * Double buffer with one spare slot, so the writer never overwrites the snapshot being read
+ * and neither side ever waits.
+ */
+class SnapshotBuffer {
+    /**
+     * Ball state after a simulation step
+     */
+    static class Snapshot {
+        /**
+         * Position before and after the last step
+         */
+        float prevX, prevY, x, y;
+        /**
+         * Time (System.nanoTime) the current position belongs to
+         */
+        long time;
+    }
+
+    /**
+     * Marks the spare slot as holding a snapshot the reader has not seen yet
+     */
+    private static final int FRESH = 4;
+
+    private final Snapshot[] slots = {new Snapshot(), new Snapshot(), new Snapshot()};
+    /**
+     * Slot owned by the writer
+     */
+    private int back = 0;
+    /**
+     * Slot owned by the reader
+     */
+    private int front = 1;
+    /**
+     * Slot exchanged between them, with FRESH flag
+     */
+    private final AtomicInteger spare = new AtomicInteger(2);
+
+    /**
+     * @return Snapshot to be filled by the writer
+     */
+    Snapshot back() {
+        return slots[back];
+    }
+
+    /**
+     * Makes the filled back snapshot available to the reader
+     */
+    void publish() {
+        back = spare.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * @return Newest published snapshot, stays untouched until the next call
+     */
+    Snapshot front() {
+        if ((spare.get() & FRESH) != 0)
+            front = spare.getAndSet(front) & ~FRESH;
+        return slots[front];
+    }
+}
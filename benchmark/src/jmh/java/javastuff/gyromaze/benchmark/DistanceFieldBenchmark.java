@@ -0,0 +1,46 @@
+package javastuff.gyromaze.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.DistanceField;
+import javastuff.gyromaze.core.Level;
+import javastuff.gyromaze.core.World;
+
+/**
+ * Searches of a level from the ball's cell and from all coins, up to a million cells
+ */
+@State(Scope.Benchmark)
+public class DistanceFieldBenchmark {
+    @Param({"10x8", "100x100", "1000x1000"})
+    public String size;
+
+    private Level level;
+    private World world;
+    private DistanceField field;
+
+    @Setup
+    public void setup() {
+        String[] wh = size.split("x");
+        int cellsX = Integer.parseInt(wh[0]), cellsY = Integer.parseInt(wh[1]);
+        level = new Level(1, Difficulty.Medium, cellsX, cellsY);
+        world = new World(cellsX, cellsY, 1080, 1920, Math.min(cellsX, 10), Math.min(cellsY, 8), Difficulty.Medium, 1);
+        field = new DistanceField(cellsX, cellsY);
+    }
+
+    @Benchmark
+    public int fromStart() {
+        field.fromCell(level, 0, 0, world);
+        return field.unreachableCoins(level);
+    }
+
+    @Benchmark
+    public int fromCoins() {
+        field.fromCoins(level, world);
+        return field.farthest();
+    }
+}
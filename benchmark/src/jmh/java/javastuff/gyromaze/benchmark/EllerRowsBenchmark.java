@@ -0,0 +1,35 @@
+package javastuff.gyromaze.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.EllerRows;
+
+/**
+ * Very tall mazes streamed row by row by Eller's algorithm, only one row is held
+ */
+@State(Scope.Benchmark)
+public class EllerRowsBenchmark {
+    @Param({"8", "1000"})
+    public int columns;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Benchmark
+    public long stream() {
+        EllerRows eller = new EllerRows(columns, new Random(1), Difficulty.Medium);
+        long[] right = new long[EllerRows.words(columns)], below = new long[EllerRows.words(columns)];
+        long open = 0;
+        for (int x = 0; x < rows; x++) {
+            eller.next(x == rows - 1, right, below);
+            open += Long.bitCount(right[0]) + Long.bitCount(below[0]);
+        }
+        return open;
+    }
+}
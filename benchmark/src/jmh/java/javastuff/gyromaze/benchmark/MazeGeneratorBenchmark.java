@@ -0,0 +1,43 @@
+package javastuff.gyromaze.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.MazeAlgorithm;
+import javastuff.gyromaze.core.MazeGenerator;
+
+/**
+ * Maze generation for each algorithm and difficulty on grids from the in-game size up to huge ones
+ */
+@State(Scope.Benchmark)
+public class MazeGeneratorBenchmark {
+    @Param({"Backtracker", "Wilson", "Kruskal", "Eller", "GrowingTree"})
+    public MazeAlgorithm algorithm;
+
+    @Param({"Easy", "Medium", "Hard"})
+    public Difficulty difficulty;
+
+    @Param({"10x8", "100x100", "500x500", "2000x2000"})
+    public String size;
+
+    private int width, height;
+
+    @Setup
+    public void setup() {
+        String[] wh = size.split("x");
+        width = Integer.parseInt(wh[0]);
+        height = Integer.parseInt(wh[1]);
+    }
+
+    @Benchmark
+    public MazeGenerator generate() {
+        // generator can be used once only, the same seed carves the same maze in every iteration
+        MazeGenerator gen = new MazeGenerator(width, height, 42);
+        gen.Generate(difficulty, algorithm);
+        return gen;
+    }
+}
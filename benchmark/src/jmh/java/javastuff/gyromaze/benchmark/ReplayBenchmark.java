@@ -0,0 +1,83 @@
+package javastuff.gyromaze.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.MazeAlgorithm;
+import javastuff.gyromaze.core.Recording;
+import javastuff.gyromaze.core.Replay;
+import javastuff.gyromaze.core.World;
+
+/**
+ * Whole recorded games replayed through the physics, the closest to how the game loads the world.
+ * Plays a recording pulled from a device if given (-p recording=path), otherwise a game played by a random tilt.
+ */
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+    /**
+     * One physics step of the game loop (240 Hz)
+     */
+    private static final double STEP = 1.0 / 240;
+
+    @Param({""})
+    public String recording;
+
+    private Recording game;
+
+    @Setup
+    public void setup() throws IOException {
+        if (!recording.isEmpty()) {
+            InputStream in = new BufferedInputStream(new FileInputStream(recording));
+            try {
+                game = Recording.read(in);
+            } finally {
+                in.close();
+            }
+            return;
+        }
+        // the first random game that lasts at least a minute of play
+        for (long seed = 1; game == null || Replay.run(game).steps < 240 * 60; seed++)
+            game = play(seed);
+    }
+
+    /**
+     * Records a game on a 1080p phone, the tilt drifts as a hand would move it
+     */
+    private static Recording play(long seed) {
+        Recording r = new Recording(10, 8, 1080, 1920, 10, 8, Difficulty.Easy, MazeAlgorithm.Backtracker, seed, false);
+        World world = r.newWorld();
+        world.recording = r;
+        world.initialize();
+        Random random = new Random(seed);
+        float x = 0, y = 0;
+        for (int k = 0; k < 240 * 600; k++) {
+            // the sensor reports about every 5th step
+            if (random.nextInt(5) == 0) {
+                x = World.clamp(x + random.nextFloat() - 0.5f, -5, 5);
+                y = World.clamp(y + random.nextFloat() - 0.5f, -5, 5);
+            }
+            World.Result result = world.step(x, y, STEP);
+            if (result == World.Result.cleared)
+                world.initialize();
+            else if (result == World.Result.fallen)
+                break;
+        }
+        r.finish(world);
+        return r;
+    }
+
+    @Benchmark
+    public Replay.Outcome replay() throws IOException {
+        return Replay.run(game);
+    }
+}
@@ -0,0 +1,58 @@
+package javastuff.gyromaze.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.MazeAlgorithm;
+import javastuff.gyromaze.core.MazeGenerator;
+import javastuff.gyromaze.core.TiledCarver;
+
+/**
+ * Huge mazes carved in tiles on 1 to 8 threads, to compare with MazeGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+public class TiledMazeBenchmark {
+    @Param({"Backtracker", "Kruskal"})
+    public MazeAlgorithm algorithm;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"256"})
+    public int tileSize;
+
+    @Param({"2000x2000", "4000x4000"})
+    public String size;
+
+    private int width, height;
+    private ForkJoinPool pool;
+    private TiledCarver carver;
+
+    @Setup
+    public void setup() {
+        String[] wh = size.split("x");
+        width = Integer.parseInt(wh[0]);
+        height = Integer.parseInt(wh[1]);
+        pool = new ForkJoinPool(threads);
+        carver = new TiledCarver(algorithm, tileSize, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MazeGenerator generate() {
+        MazeGenerator gen = new MazeGenerator(width, height, 42);
+        gen.Generate(Difficulty.Medium, carver);
+        return gen;
+    }
+}
@@ -0,0 +1,103 @@
+package javastuff.gyromaze.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javastuff.gyromaze.core.Ball;
+import javastuff.gyromaze.core.Difficulty;
+import javastuff.gyromaze.core.StepProfile;
+import javastuff.gyromaze.core.World;
+
+/**
+ * Hot path of the game: wall collisions alone and full physics steps, with walls looked up around the ball
+ * or scanned over the whole maze as before, on mazes from the in-game size up to ones far larger than the screen.
+ * The ball is put back to the same spot before each operation so every operation does the same work.
+ */
+@State(Scope.Thread)
+public class WorldBenchmark {
+    /**
+     * One physics step of the game loop (240 Hz)
+     */
+    private static final double STEP = 1.0 / 240;
+
+    @Param({"Easy", "Hard"})
+    public Difficulty difficulty;
+
+    /**
+     * Cell rows x columns
+     */
+    @Param({"10x8", "100x100", "500x500"})
+    public String size;
+
+    private World world;
+    private final StepProfile profile = new StepProfile();
+    private float startX, startY;
+
+    @Setup
+    public void setup() {
+        int cellsX = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int cellsY = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+        // 1080p portrait phone showing 10x8 cells, larger mazes scroll
+        world = new World(cellsX, cellsY, 1080, 1920, 10, 8, difficulty, 42);
+        world.initialize();
+        // start in the middle of the maze, touching the wall above the cell if there is one
+        startX = cellsY / 2 * world.columnPitch + world.horizontalWallHWidth / 2f;
+        startY = cellsX / 2 * world.rowPitch + world.circleDiameter;
+    }
+
+    private Ball reset() {
+        Ball b = world.ball;
+        b.X = b.oldX = startX;
+        b.Y = b.oldY = startY;
+        b.velX = 0;
+        b.velY = -100;
+        return b;
+    }
+
+    @Benchmark
+    public Ball nearbyWallCollisions() {
+        Ball b = reset();
+        world.nearbyWallCollisions();
+        return b;
+    }
+
+    @Benchmark
+    public Ball allWallCollisions() {
+        Ball b = reset();
+        world.allWallCollisions();
+        return b;
+    }
+
+    @Benchmark
+    public World.Result step() {
+        world.profile = null;
+        world.scanAllWalls = false;
+        reset();
+        return world.step(0.5f, -2f, STEP);
+    }
+
+    /**
+     * Same step resolving walls by the scan over the whole maze, the difference is what the lookup around the ball saves
+     */
+    @Benchmark
+    public World.Result stepScanningAllWalls() {
+        world.profile = null;
+        world.scanAllWalls = true;
+        reset();
+        return world.step(0.5f, -2f, STEP);
+    }
+
+    /**
+     * Same step measured by a profile, the difference is the cost of the instrumentation
+     */
+    @Benchmark
+    public World.Result profiledStep() {
+        world.profile = profile;
+        world.scanAllWalls = false;
+        reset();
+        return world.step(0.5f, -2f, STEP);
+    }
+}
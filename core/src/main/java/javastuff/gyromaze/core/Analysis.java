@@ -0,0 +1,605 @@
+package javastuff.gyromaze.core;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many levels without a screen to see how hard the difficulty settings make them.
+ * Each level gets its own world and pilot that never leave the thread playing it, levels are spread
+ * over all cores by a fork-join pool and the results are merged at the end, so nothing is shared while playing.
+ * Every level is also searched for coins the ball can not get to past the holes and for how far the coins are.
+ * Run as a program, it reports survival, time to clear, coins collected and routes for every difficulty.
+ */
+public class Analysis {
+    /**
+     * One physics step of the game loop (240 Hz)
+     */
+    public static final double STEP = 1.0 / 240;
+    /**
+     * Levels played by one task, smaller ranges are not split further
+     */
+    private static final int BATCH = 4;
+
+    /**
+     * Tilts the device during one level, used by one thread only
+     */
+    public interface Pilot {
+        /**
+         * Gives the tilt for the next step
+         * @param world World being played
+         * @param out Receives the sensor values
+         */
+        void tilt(World world, Vector out);
+    }
+
+    /**
+     * Makes a pilot for each level, called from any thread
+     */
+    public interface Pilots {
+        /**
+         * @param seed Seed of the level, a pilot may take its randomness from it
+         * @return New pilot
+         */
+        Pilot create(long seed);
+    }
+
+    /**
+     * How the played levels ended
+     */
+    public static class Report {
+        public final Difficulty difficulty;
+        public final MazeAlgorithm algorithm;
+        /**
+         * Number of levels played, cleared, fallen into a hole and still playing when time ran out
+         */
+        public int levels, cleared, fallen, timedOut;
+        /**
+         * Coins collected and coins there were in all the levels
+         */
+        public long coins, totalCoins;
+        /**
+         * Coins no route from the ball's start cell leads to without crossing a hole the ball can not get past
+         */
+        public long unreachableCoins;
+        /**
+         * Levels with such coins, they can not be cleared
+         */
+        public int unclearable;
+        /**
+         * Cells from the start to the farthest coin that can be reached, a rough measure of how far the ball must go
+         */
+        public final Histogram routes = new Histogram();
+        /**
+         * Steps played until the level was cleared, until the ball fell
+         */
+        public final Histogram clearSteps = new Histogram(), fallSteps = new Histogram();
+
+        Report(Difficulty difficulty, MazeAlgorithm algorithm) {
+            this.difficulty = difficulty;
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Adds results of another part of the levels
+         */
+        void add(Report other) {
+            levels += other.levels;
+            cleared += other.cleared;
+            fallen += other.fallen;
+            timedOut += other.timedOut;
+            coins += other.coins;
+            totalCoins += other.totalCoins;
+            unreachableCoins += other.unreachableCoins;
+            unclearable += other.unclearable;
+            routes.add(other.routes);
+            clearSteps.add(other.clearSteps);
+            fallSteps.add(other.fallSteps);
+        }
+
+        /**
+         * @return Share of levels the ball did not fall in
+         */
+        public double survival() {
+            return levels == 0 ? 0 : (levels - fallen) / (double) levels;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%-11s %-6s %6d levels, survived %5.1f %%, cleared %5.1f %%, clear p50 %5.1f s p90 %5.1f s, fall p50 %5.1f s, coins %5.1f %%"
+                            + ", unreachable %4.1f %% (%d levels), route p50 %d p90 %d cells",
+                    algorithm, difficulty, levels, 100 * survival(), 100.0 * cleared / Math.max(levels, 1),
+                    clearSteps.percentile(50) * STEP, clearSteps.percentile(90) * STEP, fallSteps.percentile(50) * STEP,
+                    100.0 * coins / Math.max(totalCoins, 1), 100.0 * unreachableCoins / Math.max(totalCoins, 1), unclearable,
+                    routes.percentile(50), routes.percentile(90));
+        }
+    }
+
+    private final int cellsX, cellsY, viewWidth, viewHeight;
+    private final MazeAlgorithm algorithm;
+    private final long maxSteps;
+    private final Pilots pilots;
+
+    /**
+     * @param cellsX Number of cell rows of a level
+     * @param cellsY Number of cell columns of a level
+     * @param viewWidth Width of the simulated screen
+     * @param viewHeight Height of the simulated screen
+     * @param algorithm Algorithm carving the mazes
+     * @param seconds Time a level is played at most
+     * @param pilots Pilots tilting the levels
+     */
+    public Analysis(int cellsX, int cellsY, int viewWidth, int viewHeight, MazeAlgorithm algorithm, double seconds,
+                    Pilots pilots) {
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.algorithm = algorithm;
+        maxSteps = (long) (seconds / STEP);
+        this.pilots = pilots;
+    }
+
+    /**
+     * Plays levels of a difficulty
+     * @param pool Pool to play them in
+     * @param difficulty Difficulty settings
+     * @param seed Seed of the first level, the following ones take the next seeds
+     * @param levels Number of levels
+     * @return How they ended
+     */
+    public Report run(ForkJoinPool pool, Difficulty difficulty, long seed, int levels) {
+        return pool.invoke(new Task(difficulty, seed, 0, levels));
+    }
+
+    /**
+     * Plays a range of levels, splits it in halves while it is large
+     */
+    private class Task extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+
+        private final Difficulty difficulty;
+        private final long seed;
+        private final int from, to;
+
+        Task(Difficulty difficulty, long seed, int from, int to) {
+            this.difficulty = difficulty;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from > BATCH) {
+                int middle = (from + to) >>> 1;
+                Task left = new Task(difficulty, seed, from, middle);
+                left.fork();
+                Report report = new Task(difficulty, seed, middle, to).compute();
+                report.add(left.join());
+                return report;
+            }
+            Report report = new Report(difficulty, algorithm);
+            DistanceField field = new DistanceField(cellsX, cellsY);
+            for (int k = from; k < to; k++)
+                play(difficulty, seed + k, field, report);
+            return report;
+        }
+    }
+
+    /**
+     * Checks which coins of a level can be reached, then plays it until it is cleared, the ball falls or time runs out
+     * @param field Search buffers of the thread
+     */
+    private void play(Difficulty difficulty, long seed, DistanceField field, Report report) {
+        Level level = new Level(seed, difficulty, algorithm, cellsX, cellsY);
+        World world = new World(cellsX, cellsY, viewWidth, viewHeight, difficulty, seed);
+        // the ball starts in the top left cell
+        field.fromCell(level, 0, 0, world);
+        int unreachable = field.unreachableCoins(level);
+        report.unreachableCoins += unreachable;
+        if (unreachable > 0)
+            report.unclearable++;
+        report.routes.record(field.farthestCoin(level));
+
+        world.initialize(level);
+        Pilot pilot = pilots.create(seed);
+        Vector tilt = new Vector(0, 0);
+        int coins = world.coinCount;
+
+        World.Result result = World.Result.playing;
+        long steps = 0;
+        while (result == World.Result.playing && steps < maxSteps) {
+            pilot.tilt(world, tilt);
+            result = world.step(tilt.x, tilt.y, STEP);
+            steps++;
+        }
+
+        report.levels++;
+        report.totalCoins += coins;
+        report.coins += coins - world.coinCount;
+        if (result == World.Result.cleared) {
+            report.cleared++;
+            report.clearSteps.record(steps);
+        } else if (result == World.Result.fallen) {
+            report.fallen++;
+            report.fallSteps.record(steps);
+        } else {
+            report.timedOut++;
+        }
+    }
+
+    /**
+     * @return Pilots that drift the tilt like an unsteady hand, the sensor changes about every 5th step
+     */
+    public static Pilots randomTilt() {
+        return new Pilots() {
+            @Override
+            public Pilot create(long seed) {
+                final Random random = new Random(seed);
+                return new Pilot() {
+                    private float x, y;
+
+                    @Override
+                    public void tilt(World world, Vector out) {
+                        if (random.nextInt(5) == 0) {
+                            x = World.clamp(x + random.nextFloat() - 0.5f, -5, 5);
+                            y = World.clamp(y + random.nextFloat() - 0.5f, -5, 5);
+                        }
+                        out.x = x;
+                        out.y = y;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return Pilots that roll the ball along the shortest route to the nearest coin that can be reached
+     */
+    public static Pilots seeking() {
+        return new Pilots() {
+            @Override
+            public Pilot create(long seed) {
+                return new Seeker();
+            }
+        };
+    }
+
+    /**
+     * Rolls the ball along the shortest route to the nearest coin over a grid of points a few pixels apart,
+     * the points where the ball fits between the walls and clears the holes of the level by a margin. The route is searched
+     * from the coins again whenever one is collected, and the ball is steered at a point further along it.
+     */
+    private static class Seeker implements Pilot {
+        /**
+         * Pixels between the points of the grid
+         */
+        private static final int PITCH = 6;
+        /**
+         * Room kept to the reach of holes, walls only stop the ball and may be touched
+         */
+        private static final float MARGIN = 3;
+        /**
+         * Points along the route the ball is steered at
+         */
+        private static final int AHEAD = 16;
+        /**
+         * Top speed, and how fast the speed follows the wanted one
+         */
+        private static final float SPEED = 400, GAIN = 20;
+        /**
+         * Largest tilt given, and the deceleration planned with, half of what it gives
+         */
+        private static final float MAX_TILT = 5, BRAKE = 200 * MAX_TILT / 2;
+        private static final int UNREACHED = Integer.MAX_VALUE;
+
+        private Grid level;
+        private int coins = -1;
+        private int columns, rows;
+        private boolean[] free;
+        private int[] distance, queue;
+        private final WallList walls = new WallList();
+        private final Coin coin = new Coin(0, 0, 0);
+        private final Hole hole = new Hole(0, 0, 0);
+
+        @Override
+        public void tilt(World world, Vector out) {
+            if (world.level != level) {
+                level = world.level;
+                clearance(world);
+                coins = -1;
+            }
+            if (world.coinCount != coins) {
+                coins = world.coinCount;
+                search(world);
+            }
+            Ball ball = world.ball;
+            int p = nearest(ball.X, ball.Y);
+            // walk down the route as far as the ball can go straight, stays put where no coin can be reached
+            for (int k = 0; k < AHEAD && p >= 0 && distance[p] > 0; k++) {
+                int q = next(p);
+                if (k > 0 && !inSight(ball.X, ball.Y, q))
+                    break;
+                p = q;
+            }
+            float wantX = 0, wantY = 0;
+            if (p >= 0) {
+                float dx = p % columns * PITCH - ball.X, dy = p / columns * PITCH - ball.Y;
+                float length = (float) Math.sqrt(dx * dx + dy * dy);
+                // slow enough to stop at the point, or before the reach of the nearest hole, on half the largest tilt
+                float stop = Math.min(length, room(world, ball.X, ball.Y));
+                float speed = Math.min(SPEED, (float) Math.sqrt(2 * BRAKE * Math.max(stop, 0)));
+                if (length > 0) {
+                    wantX = dx / length * speed;
+                    wantY = dy / length * speed;
+                }
+            }
+            // the x sensor is inverted
+            out.x = World.clamp(-GAIN * (wantX - ball.velX) / 200, -MAX_TILT, MAX_TILT);
+            out.y = World.clamp(GAIN * (wantY - ball.velY) / 200, -MAX_TILT, MAX_TILT);
+        }
+
+        /**
+         * Marks the points of the grid where the ball clears the walls and the holes
+         */
+        private void clearance(World world) {
+            columns = world.width / PITCH + 1;
+            rows = world.height / PITCH + 1;
+            if (free == null || free.length != columns * rows) {
+                free = new boolean[columns * rows];
+                distance = new int[columns * rows];
+                queue = new int[columns * rows];
+            }
+            float radius = world.ball.diameter;
+            world.walls(level, 0, world.cellsX - 1, 0, world.cellsY - 1, walls);
+            for (int v = 0; v < rows; v++) {
+                for (int u = 0; u < columns; u++) {
+                    float x = u * PITCH, y = v * PITCH;
+                    boolean clear = x >= radius && x <= world.width - radius && y >= radius && y <= world.height - radius;
+                    for (int k = 0; clear && k < walls.size(); k++) {
+                        Wall w = walls.get(k);
+                        float dx = Math.max(Math.max(w.x - x, x - (w.x + w.width)), 0);
+                        float dy = Math.max(Math.max(w.y - y, y - (w.y + w.height)), 0);
+                        clear = dx * dx + dy * dy >= radius * radius;
+                    }
+                    free[v * columns + u] = clear && room(world, x, y) >= MARGIN;
+                }
+            }
+        }
+
+        /**
+         * @return Distance from (x, y) to the edge of the reach of the nearest hole around
+         */
+        private float room(World world, float x, float y) {
+            float room = Float.MAX_VALUE;
+            int i = world.row(y), j = world.column(x);
+            for (int a = Math.max(0, i - 1); a <= Math.min(world.cellsX - 1, i + 1); a++) {
+                for (int b = Math.max(0, j - 1); b <= Math.min(world.cellsY - 1, j + 1); b++) {
+                    if (world.hole(level, a, b, hole) == null)
+                        continue;
+                    float dx = hole.X - x, dy = hole.Y - y;
+                    room = Math.min(room, (float) Math.sqrt(dx * dx + dy * dy) - hole.diameter);
+                }
+            }
+            return room;
+        }
+
+        /**
+         * @return True if the line from (x, y) to point p keeps to points of the grid that clear walls and holes
+         */
+        private boolean inSight(float x, float y, int p) {
+            float dx = p % columns * PITCH - x, dy = p / columns * PITCH - y;
+            int samples = (int) (Math.sqrt(dx * dx + dy * dy) * 2 / PITCH) + 1;
+            for (int k = 1; k <= samples; k++) {
+                int u = Math.round((x + dx * k / samples) / PITCH), v = Math.round((y + dy * k / samples) / PITCH);
+                if (u < 0 || u >= columns || v < 0 || v >= rows || !free[v * columns + u])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Counts the steps from every point to the nearest point that collects a coin, breadth first
+         */
+        private void search(World world) {
+            Arrays.fill(distance, UNREACHED);
+            int head = 0, tail = 0;
+            float radius = world.ball.diameter;
+            for (int i = 0; i < world.cellsX; i++) {
+                for (int j = 0; j < world.cellsY; j++) {
+                    if (world.coin(level, i, j, coin) == null)
+                        continue;
+                    // points that collect the coin, kept a pixel inside the distance it is collected at
+                    float reach = coin.diameter + radius - 1;
+                    int u0 = Math.max(0, (int) ((coin.X - reach) / PITCH)), u1 = Math.min(columns - 1, (int) ((coin.X + reach) / PITCH) + 1);
+                    int v0 = Math.max(0, (int) ((coin.Y - reach) / PITCH)), v1 = Math.min(rows - 1, (int) ((coin.Y + reach) / PITCH) + 1);
+                    for (int v = v0; v <= v1; v++) {
+                        for (int u = u0; u <= u1; u++) {
+                            int p = v * columns + u;
+                            float dx = u * PITCH - coin.X, dy = v * PITCH - coin.Y;
+                            if (free[p] && distance[p] != 0 && dx * dx + dy * dy < reach * reach) {
+                                distance[p] = 0;
+                                queue[tail++] = p;
+                            }
+                        }
+                    }
+                }
+            }
+            while (head < tail) {
+                int p = queue[head++], u = p % columns, d = distance[p] + 1;
+                if (u > 0 && free[p - 1] && distance[p - 1] == UNREACHED) {
+                    distance[p - 1] = d;
+                    queue[tail++] = p - 1;
+                }
+                if (u < columns - 1 && free[p + 1] && distance[p + 1] == UNREACHED) {
+                    distance[p + 1] = d;
+                    queue[tail++] = p + 1;
+                }
+                if (p >= columns && free[p - columns] && distance[p - columns] == UNREACHED) {
+                    distance[p - columns] = d;
+                    queue[tail++] = p - columns;
+                }
+                if (p < free.length - columns && free[p + columns] && distance[p + columns] == UNREACHED) {
+                    distance[p + columns] = d;
+                    queue[tail++] = p + columns;
+                }
+            }
+        }
+
+        /**
+         * @return Point of the grid nearest to (x, y) that is on a route, or -1 if none is around
+         */
+        private int nearest(float x, float y) {
+            int u0 = Math.round(x / PITCH), v0 = Math.round(y / PITCH);
+            int best = -1;
+            float bestDistance = Float.MAX_VALUE;
+            for (int v = Math.max(0, v0 - 2); v <= Math.min(rows - 1, v0 + 2); v++) {
+                for (int u = Math.max(0, u0 - 2); u <= Math.min(columns - 1, u0 + 2); u++) {
+                    int p = v * columns + u;
+                    float dx = u * PITCH - x, dy = v * PITCH - y;
+                    if (distance[p] != UNREACHED && dx * dx + dy * dy < bestDistance) {
+                        bestDistance = dx * dx + dy * dy;
+                        best = p;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return Neighbour of point p one step nearer to a coin
+         */
+        private int next(int p) {
+            int u = p % columns, d = distance[p];
+            if (u > 0 && distance[p - 1] < d)
+                return p - 1;
+            if (u < columns - 1 && distance[p + 1] < d)
+                return p + 1;
+            if (p >= columns && distance[p - columns] < d)
+                return p - columns;
+            return distance[p + columns] < d ? p + columns : p;
+        }
+    }
+
+    /**
+     * Tilts of a recorded game in runs of equal values
+     */
+    private static class Runs implements Recording.Player {
+        float[] xs = new float[64], ys = new float[64];
+        /**
+         * Step after the last one of each run, counted from the start of the game
+         */
+        int[] ends = new int[64];
+        int size;
+
+        @Override
+        public void run(float sensorX, float sensorY, double delta, int steps) {
+            if (size == ends.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            xs[size] = sensorX;
+            ys[size] = sensorY;
+            ends[size] = (size > 0 ? ends[size - 1] : 0) + steps;
+            size++;
+        }
+
+        @Override
+        public void bounds(float width, float height) {
+        }
+
+        @Override
+        public void end(long steps, int score, float ballX, float ballY) {
+        }
+    }
+
+    /**
+     * @return Run holding the step, a step equal to the end of a run belongs to the next one
+     */
+    private static int runAt(int[] ends, int step) {
+        int r = Arrays.binarySearch(ends, step);
+        return r >= 0 ? r + 1 : -r - 1;
+    }
+
+    /**
+     * Pilots that repeat the tilt of a recorded game, each from a different point of it given by the level's seed
+     * @param recording Recorded game
+     * @return Pilots sharing the recorded inputs, which are only read
+     * @throws IOException If the recording is damaged or holds no steps
+     */
+    public static Pilots recorded(Recording recording) throws IOException {
+        final Runs runs = new Runs();
+        recording.play(runs);
+        if (runs.size == 0)
+            throw new IOException("Recording holds no steps");
+        final int[] ends = Arrays.copyOf(runs.ends, runs.size);
+        final int total = ends[ends.length - 1];
+        return new Pilots() {
+            @Override
+            public Pilot create(long seed) {
+                final int start = (int) (((seed % total) + total) % total);
+                return new Pilot() {
+                    private int step = start;
+                    private int run = runAt(ends, start);
+
+                    @Override
+                    public void tilt(World world, Vector out) {
+                        out.x = runs.xs[run];
+                        out.y = runs.ys[run];
+                        if (++step == total) {
+                            step = 0;
+                            run = 0;
+                        } else if (step == ends[run]) {
+                            run++;
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Plays levels of every maze algorithm and difficulty and prints how they ended.
+     * Arguments: [levels per difficulty] [threads] [pilot]: "seeking" (default), "random" or a recording to take the tilt from.
+     */
+    public static void main(String[] args) throws IOException {
+        int levels = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Pilots pilots = seeking();
+        if (args.length > 2 && args[2].equals("random")) {
+            pilots = randomTilt();
+        } else if (args.length > 2 && !args[2].equals("seeking")) {
+            InputStream in = new BufferedInputStream(new FileInputStream(args[2]));
+            try {
+                pilots = recorded(Recording.read(in));
+            } finally {
+                in.close();
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (MazeAlgorithm algorithm : MazeAlgorithm.values()) {
+                // a 1080p phone in portrait, levels of the size the game plays, two minutes each
+                Analysis analysis = new Analysis(10, 8, 1080, 1920, algorithm, 120, pilots);
+                for (Difficulty difficulty : Difficulty.values()) {
+                    long start = System.nanoTime();
+                    Report report = analysis.run(pool, difficulty, 1, levels);
+                    double time = (System.nanoTime() - start) / 1e9;
+                    System.out.println(report + String.format(Locale.US, ", %.0f levels/s", levels / time));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
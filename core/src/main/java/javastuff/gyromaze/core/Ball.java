@@ -1,13 +1,10 @@
-package javastuff.gyromaze;
-
-import android.content.Context;
-import android.view.View;
+package javastuff.gyromaze.core;
 
 /**
  * Moving ball in maze.
  * Recomputes its position according to the velocity taken from phone's accelerometer.
  */
-class Ball extends View {
+public class Ball {
     /**
      * Diameter of ball
      */
@@ -25,8 +22,7 @@ class Ball extends View {
      */
     public float velX,velY;
 
-    public Ball(Context context,int diameter) {
-        super(context);
+    public Ball(int diameter) {
         this.diameter = diameter;
     }
 
@@ -0,0 +1,60 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Part of the world shown in the view.
+ * Keeps a point (the ball) in the middle and stops at the edges of the world.
+ */
+public class Camera {
+    /**
+     * Top left corner of the view in the world
+     */
+    public float x, y;
+    /**
+     * Size of the view
+     */
+    public final int width, height;
+
+    public Camera(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Moves the view over the given point
+     * @param world World that is looked at
+     * @param targetX Point x in the world
+     * @param targetY Point y in the world
+     */
+    public void follow(World world, float targetX, float targetY) {
+        x = World.clamp(targetX - width / 2f, 0, Math.max(0, world.width - width));
+        y = World.clamp(targetY - height / 2f, 0, Math.max(0, world.height - height));
+    }
+
+    /**
+     * @return Row of the topmost cell in the view
+     */
+    public int firstRow(World world) {
+        return world.row(y);
+    }
+
+    /**
+     * @return Row of the bottommost cell in the view
+     */
+    public int lastRow(World world) {
+        return world.row(y + height);
+    }
+
+    /**
+     * @return Column of the leftmost cell in the view
+     */
+    public int firstColumn(World world) {
+        return world.column(x);
+    }
+
+    /**
+     * @return Column of the rightmost cell in the view
+     */
+    public int lastColumn(World world) {
+        return world.column(x + width);
+    }
+}
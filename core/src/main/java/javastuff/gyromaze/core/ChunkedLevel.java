@@ -0,0 +1,207 @@
+package javastuff.gyromaze.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Endless level: a maze of square chunks generated when they are first looked at.
+ * Each chunk is a small Level built from the seed and the chunk's position, so it comes out the same every time.
+ * Walls between neighbouring chunks always have a door, so every cell can be reached.
+ * Only chunks around the last looked at ones are kept, a chunk left far behind is dropped and built again when needed,
+ * so the memory taken by the cells does not depend on how far the ball goes.
+ * Coins collected in a chunk are kept apart from its cells and outlive it, a chunk built again has them gone,
+ * which takes a few words for each chunk the ball collected something in.
+ */
+public class ChunkedLevel implements Grid {
+    /**
+     * Number of cell rows/columns of a chunk
+     */
+    public static final int CHUNK = 16;
+    /**
+     * Number of cell rows/columns of the whole level, the ball stops at its far borders like in any level.
+     * Positions are floats with 24 bits, so they stay precise to 1/16 pixel up to 2^20 pixels
+     * (8192 cells of 128 pixels), a larger level would let the ball jitter and slip through walls far out.
+     */
+    public static final int SIZE = 8192;
+    /**
+     * Chunk rows/columns kept, chunks this far apart share a slot
+     */
+    static final int SLOTS = 5;
+    /**
+     * Chance of an extra door in a wall between two chunks
+     */
+    private static final int EXTRA_DOOR = 8;
+
+    /**
+     * Settings the level is built from
+     */
+    public final long seed;
+    public final Difficulty difficulty;
+    public final MazeAlgorithm algorithm;
+
+    /**
+     * Chunk of the level
+     */
+    private static class Chunk {
+        final int row, col;
+        final Level cells;
+        /**
+         * Cells with a collected coin have their bit set, shared with the copies of the chunk built later
+         */
+        final long[] collected;
+
+        Chunk(int row, int col, Level cells, long[] collected) {
+            this.row = row;
+            this.col = col;
+            this.cells = cells;
+            this.collected = collected;
+        }
+    }
+
+    /**
+     * Kept chunks, chunk (r, c) lives in slot (r mod SLOTS, c mod SLOTS).
+     * Read and built from both the simulation and the render thread.
+     */
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<Chunk>(SLOTS * SLOTS);
+    /**
+     * Collected coins of the chunks that had any, by chunk row and column
+     */
+    private final ConcurrentHashMap<Long, long[]> collected = new ConcurrentHashMap<Long, long[]>();
+
+    /**
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param algorithm Algorithm carving the chunks
+     */
+    public ChunkedLevel(long seed, Difficulty difficulty, MazeAlgorithm algorithm) {
+        this.seed = seed;
+        this.difficulty = difficulty;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Mixes bits of a number so that close numbers give unrelated results (SplitMix64 finalizer)
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) + col;
+    }
+
+    /**
+     * @return Chunk holding cell (i, j), built if it is not kept
+     */
+    private Chunk chunk(int i, int j) {
+        int row = i / CHUNK, col = j / CHUNK;
+        int slot = (row % SLOTS) * SLOTS + col % SLOTS;
+        while (true) {
+            Chunk c = chunks.get(slot);
+            if (c != null && c.row == row && c.col == col)
+                return c;
+            long[] collected = this.collected.get(key(row, col));
+            Chunk built = new Chunk(row, col,
+                    new Level(mix(seed + mix(key(row, col))), difficulty, algorithm, CHUNK, CHUNK),
+                    collected != null ? collected : new long[CHUNK * CHUNK / 64]);
+            // another thread may have put the chunk in first, then its copy wins
+            if (chunks.compareAndSet(slot, c, built))
+                return built;
+        }
+    }
+
+    /**
+     * Decides whether a wall between two chunks has a door.
+     * Each such wall has one door at a place given by the seed and a few more by chance.
+     * @param row Chunk row of the wall's cell
+     * @param col Chunk column of the wall's cell
+     * @param vertical Wall between columns (true) or rows (false)
+     * @param k Position of the cell along the wall
+     * @return True if there is no wall
+     */
+    private boolean door(int row, int col, boolean vertical, int k) {
+        long edge = mix(seed ^ mix(((long) row << 32) + col) ^ (vertical ? 1 : 2));
+        return k == (int) ((edge >>> 1) % CHUNK) || mix(edge + k + 1) % EXTRA_DOOR == 0;
+    }
+
+    @Override
+    public int rows() {
+        return SIZE;
+    }
+
+    @Override
+    public int columns() {
+        return SIZE;
+    }
+
+    @Override
+    public boolean hasVerticalWall(int i, int j) {
+        if (i < 0 || i >= SIZE || j < 0 || j >= SIZE - 1)
+            return false;
+        if (j % CHUNK == CHUNK - 1)
+            return !door(i / CHUNK, j / CHUNK, true, i % CHUNK);
+        return chunk(i, j).cells.hasVerticalWall(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public boolean hasHorizontalWall(int i, int j) {
+        if (i < 0 || i >= SIZE - 1 || j < 0 || j >= SIZE)
+            return false;
+        if (i % CHUNK == CHUNK - 1)
+            return !door(i / CHUNK, j / CHUNK, false, j % CHUNK);
+        return chunk(i, j).cells.hasHorizontalWall(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public boolean hasHole(int i, int j) {
+        return chunk(i, j).cells.hasHole(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public float holeX(int i, int j) {
+        return chunk(i, j).cells.holeX(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public float holeY(int i, int j) {
+        return chunk(i, j).cells.holeY(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public boolean hasCoin(int i, int j) {
+        Chunk c = chunk(i, j);
+        int b = i % CHUNK * CHUNK + j % CHUNK;
+        return c.cells.hasCoin(i % CHUNK, j % CHUNK) && (c.collected[b >>> 6] & (1L << b)) == 0;
+    }
+
+    @Override
+    public float coinX(int i, int j) {
+        return chunk(i, j).cells.coinX(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public float coinY(int i, int j) {
+        return chunk(i, j).cells.coinY(i % CHUNK, j % CHUNK);
+    }
+
+    @Override
+    public void collectCoin(int i, int j) {
+        Chunk c = chunk(i, j);
+        int b = i % CHUNK * CHUNK + j % CHUNK;
+        // kept before the bit is set, so a copy of the chunk built meanwhile shares it
+        long[] kept = collected.putIfAbsent(key(c.row, c.col), c.collected);
+        c.collected[b >>> 6] |= 1L << b;
+        if (kept != null)
+            kept[b >>> 6] |= 1L << b;
+    }
+
+    /**
+     * @return Never runs out, the level goes on until the ball falls
+     */
+    @Override
+    public int coinCount() {
+        return Integer.MAX_VALUE;
+    }
+}
@@ -1,18 +1,14 @@
-package javastuff.gyromaze;
-
-import android.content.Context;
-import android.view.View;
+package javastuff.gyromaze.core;
 
 /**
  * Collectible coin, increases highscore.
  */
-class Coin extends View {
+public class Coin {
     public int diameter;
     public float X;
     public float Y;
 
-    public Coin(Context context, int diameter, float X, float Y) {
-        super(context);
+    public Coin(int diameter, float X, float Y) {
         this.diameter = diameter;
         this.X = X;
         this.Y = Y;
@@ -25,6 +21,8 @@ class Coin extends View {
      */
     public boolean collides(Ball b)
     {
-        return Math.sqrt(Math.pow(X - b.X,2) + Math.pow(Y - b.Y,2)) < diameter + b.diameter;
+        // compare squared distances, no need for a root
+        float dx = X - b.X, dy = Y - b.Y, r = diameter + b.diameter;
+        return dx * dx + dy * dy < r * r;
     }
 }
@@ -0,0 +1,29 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Game difficulty, affects maze layout, holes and score
+ */
+public enum Difficulty {
+    Easy(1.0f, 0.1f, 1),
+    Medium(1.1f, 0.2f, 2),
+    Hard(1.2f, 0.3f, 3);
+
+    /**
+     * Hole size relative to the ball
+     */
+    public final float holeSize;
+    /**
+     * Chance of a hole in a cell
+     */
+    public final float holeChance;
+    /**
+     * Points for a coin
+     */
+    public final int scoreMultiplier;
+
+    Difficulty(float holeSize, float holeChance, int scoreMultiplier) {
+        this.holeSize = holeSize;
+        this.holeChance = holeChance;
+        this.scoreMultiplier = scoreMultiplier;
+    }
+}
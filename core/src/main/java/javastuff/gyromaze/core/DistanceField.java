@@ -0,0 +1,185 @@
+package javastuff.gyromaze.core;
+
+import java.util.Arrays;
+
+/**
+ * Shortest routes through a level: for every cell the number of cells to the nearest source
+ * and the neighbour to go to on the way there. Built by a breadth-first search over the walls,
+ * in time and memory linear in the number of cells (9 bytes per cell, allocated once and reused).
+ *
+ * From the ball's start cell it tells which coins can be reached and how far they are,
+ * from all coins at once it is a flow field pointing from any cell to the nearest coin.
+ * Routes may avoid holes: a route only goes on from a cell if the ball can get from the side it came in by
+ * to the side it goes out by past the holes of the cell and of its neighbours (see World.exits()).
+ * A cell closed that way is still reached, a coin in it can be collected with care. In a perfect maze every cell
+ * is entered by one side only; in a maze with loops a cell is only tried from the side it is reached by first.
+ */
+public class DistanceField {
+    /**
+     * Distance of a cell no source reaches
+     */
+    public static final int UNREACHABLE = -1;
+    /**
+     * Directions to the next cell on the way to the nearest source, NONE for sources and unreachable cells
+     */
+    public static final byte NONE = 0, UP = 1, DOWN = 2, LEFT = 3, RIGHT = 4;
+
+    public final int rows, columns;
+    /**
+     * Distance and direction of cell (i, j) under index i * columns + j
+     */
+    private final int[] distance;
+    private final byte[] direction;
+    /**
+     * Cells in the order they were reached, the search queue
+     */
+    private final int[] queue;
+    private int reached, farthest;
+    /**
+     * Sides of a cell by direction, and their bits in World.exits()
+     */
+    private static final World.Side[] SIDES = {null, World.Side.top, World.Side.bottom, World.Side.left, World.Side.right};
+    private static final int OUT_TOP = 1 << World.Side.top.ordinal(), OUT_BOTTOM = 1 << World.Side.bottom.ordinal(),
+            OUT_LEFT = 1 << World.Side.left.ordinal(), OUT_RIGHT = 1 << World.Side.right.ordinal();
+
+    /**
+     * @param rows Number of cell rows of the levels to search
+     * @param columns Number of cell columns of the levels to search
+     */
+    public DistanceField(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        distance = new int[rows * columns];
+        direction = new byte[rows * columns];
+        queue = new int[rows * columns];
+    }
+
+    /**
+     * Searches from one cell, the ball starts in cell (0, 0)
+     * @param level Level of the size of this field
+     * @param i Cell row
+     * @param j Cell column
+     * @param world World whose ball must get past the holes, null to go through them
+     */
+    public void fromCell(Grid level, int i, int j, World world) {
+        clear(level);
+        source(i * columns + j);
+        search(level, world);
+    }
+
+    /**
+     * Searches from all coins left, every cell then points to its nearest coin
+     * @param level Level of the size of this field
+     * @param world World whose ball must get past the holes, null to go through them
+     */
+    public void fromCoins(Grid level, World world) {
+        clear(level);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                if (level.hasCoin(i, j))
+                    source(i * columns + j);
+        search(level, world);
+    }
+
+    private void clear(Grid level) {
+        if (level.rows() != rows || level.columns() != columns)
+            throw new IllegalArgumentException("Level of " + level.rows() + "x" + level.columns()
+                    + " cells does not fit a field of " + rows + "x" + columns);
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(direction, NONE);
+        reached = 0;
+        farthest = 0;
+    }
+
+    private void source(int c) {
+        distance[c] = 0;
+        queue[reached++] = c;
+    }
+
+    /**
+     * Breadth-first search from the queued sources, each cell is queued once
+     */
+    private void search(Grid level, World world) {
+        for (int head = 0; head < reached; head++) {
+            int c = queue[head];
+            int i = c / columns, j = c - i * columns;
+            // the ball comes in by the side towards the source, sources it starts in
+            int exits = world == null ? -1 : world.exits(level, i, j, SIDES[direction[c]]);
+            int d = distance[c] + 1;
+            // a neighbour reached from here goes back the opposite way
+            if (i > 0 && !level.hasHorizontalWall(i - 1, j) && (exits & OUT_TOP) != 0)
+                visit(c - columns, d, DOWN);
+            if (i < rows - 1 && !level.hasHorizontalWall(i, j) && (exits & OUT_BOTTOM) != 0)
+                visit(c + columns, d, UP);
+            if (j > 0 && !level.hasVerticalWall(i, j - 1) && (exits & OUT_LEFT) != 0)
+                visit(c - 1, d, RIGHT);
+            if (j < columns - 1 && !level.hasVerticalWall(i, j) && (exits & OUT_RIGHT) != 0)
+                visit(c + 1, d, LEFT);
+        }
+    }
+
+    private void visit(int c, int d, byte back) {
+        if (distance[c] != UNREACHABLE)
+            return;
+        distance[c] = d;
+        direction[c] = back;
+        queue[reached++] = c;
+        farthest = d;
+    }
+
+    /**
+     * @return Number of cells from cell (i, j) to the nearest source, UNREACHABLE if there is no way
+     */
+    public int distance(int i, int j) {
+        return distance[i * columns + j];
+    }
+
+    /**
+     * @return Direction to go from cell (i, j) towards the nearest source, one of UP, DOWN, LEFT, RIGHT or NONE
+     */
+    public byte direction(int i, int j) {
+        return direction[i * columns + j];
+    }
+
+    /**
+     * @return Number of cells reached, sources included
+     */
+    public int reached() {
+        return reached;
+    }
+
+    /**
+     * @return Largest distance of a reached cell
+     */
+    public int farthest() {
+        return farthest;
+    }
+
+    /**
+     * Counts coins the last search did not reach, after a search from the ball's cell these can not be collected
+     * @param level Level searched
+     * @return Number of coins left in unreached cells
+     */
+    public int unreachableCoins(Grid level) {
+        int count = 0;
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                if (level.hasCoin(i, j) && distance[i * columns + j] == UNREACHABLE)
+                    count++;
+        return count;
+    }
+
+    /**
+     * Length of the longest route to a coin, after a search from the ball's cell a rough measure of how far it must go
+     * @param level Level searched
+     * @return Largest distance of a reached coin, 0 if none was reached
+     */
+    public int farthestCoin(Grid level) {
+        int max = 0;
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                if (level.hasCoin(i, j))
+                    max = Math.max(max, distance[i * columns + j]);
+        return max;
+    }
+}
@@ -0,0 +1,150 @@
+package javastuff.gyromaze.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Eller's algorithm: carves a maze one row at a time and remembers only which cells of the current row are connected.
+ * Takes memory for one row, so a maze of any length can be streamed row by row without holding it.
+ * Each row joins some neighbouring cells that are not connected yet and opens at least one way down from every
+ * set of connected cells, the last row joins everything left.
+ * Easy joins more often and goes down less, which gives long corridors across.
+ */
+public class EllerRows {
+    public final int columns;
+    private final Random random;
+    /**
+     * Chance to join neighbouring cells of different sets and to open a way down beyond the one needed,
+     * in 1/65536, so each decision takes a single draw
+     */
+    private final int join, down;
+    /**
+     * Set of each cell of the row, -1 for a cell not connected from above yet.
+     * Sets are numbered from 0 to columns - 1, a row never has more.
+     */
+    private final int[] set;
+    /**
+     * Joins of sets while a row is carved, the root of a set is its own parent
+     */
+    private final int[] parent;
+    /**
+     * Cells of each set in the row, then the ones not decided about going down
+     */
+    private final int[] members;
+    private final boolean[] goesDown;
+    /**
+     * Set numbers not used in the row
+     */
+    private final int[] free;
+
+    /**
+     * @param columns Number of cells in a row
+     * @param random Random source, the same seed gives the same rows
+     * @param difficulty Difficulty settings
+     */
+    public EllerRows(int columns, Random random, Difficulty difficulty) {
+        this.columns = columns;
+        this.random = random;
+        join = chance(difficulty == Difficulty.Easy ? 0.75 : difficulty == Difficulty.Medium ? 0.6 : 0.5);
+        down = chance(difficulty == Difficulty.Easy ? 0.2 : difficulty == Difficulty.Medium ? 0.3 : 0.4);
+        set = new int[columns];
+        parent = new int[columns];
+        members = new int[columns];
+        goesDown = new boolean[columns];
+        free = new int[columns];
+        Arrays.fill(set, -1);
+    }
+
+    private static int chance(double p) {
+        return (int) (p * 65536);
+    }
+
+    /**
+     * @return Number of longs holding a bit for every cell of a row
+     */
+    public static int words(int columns) {
+        return (columns + 63) >>> 6;
+    }
+
+    /**
+     * Carves the next row
+     * @param last True for the last row of the maze, it connects all cells
+     * @param right Cleared and filled, bit y set if cell y is open towards cell y + 1
+     * @param below Cleared and filled, bit y set if cell y is open towards the next row
+     */
+    public void next(boolean last, long[] right, long[] below) {
+        Arrays.fill(right, 0, words(columns), 0);
+        Arrays.fill(below, 0, words(columns), 0);
+
+        // cells not reached from above start sets of their own
+        Arrays.fill(members, 0);
+        for (int y = 0; y < columns; y++)
+            if (set[y] >= 0)
+                members[set[y]]++;
+        int freeCount = 0;
+        for (int s = columns - 1; s >= 0; s--)
+            if (members[s] == 0)
+                free[freeCount++] = s;
+        for (int y = 0; y < columns; y++) {
+            if (set[y] < 0)
+                set[y] = free[--freeCount];
+            parent[set[y]] = set[y];
+        }
+
+        // join neighbours of different sets
+        for (int y = 0; y < columns - 1; y++) {
+            int a = find(set[y]), b = find(set[y + 1]);
+            if (a != b && (last || random.nextInt(65536) < join)) {
+                right[y >>> 6] |= 1L << y;
+                parent[b] = a;
+            }
+        }
+        if (last)
+            return;
+
+        // every set goes down from at least one cell, the last cell of a set that has not gone down yet must
+        Arrays.fill(members, 0);
+        for (int y = 0; y < columns; y++) {
+            set[y] = find(set[y]);
+            members[set[y]]++;
+            goesDown[set[y]] = false;
+        }
+        for (int y = 0; y < columns; y++) {
+            int s = set[y];
+            members[s]--;
+            if (random.nextInt(65536) < down || (members[s] == 0 && !goesDown[s])) {
+                below[y >>> 6] |= 1L << y;
+                goesDown[s] = true;
+            } else {
+                set[y] = -1;
+            }
+        }
+    }
+
+    private int find(int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+
+    /**
+     * Carves a whole maze row by row, rows go along x
+     */
+    static void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+        int height = maze.height;
+        EllerRows rows = new EllerRows(height, random, difficulty);
+        long[] right = new long[words(height)], below = new long[words(height)];
+        for (int x = 0; x < maze.width; x++) {
+            rows.next(x == maze.width - 1, right, below);
+            for (int y = 0; y < height; y++) {
+                int c = x * height + y;
+                if ((right[y >>> 6] & (1L << y)) != 0)
+                    maze.RemoveWall(c, c + 1);
+                if ((below[y >>> 6] & (1L << y)) != 0)
+                    maze.RemoveWall(c, c + height);
+            }
+        }
+    }
+}
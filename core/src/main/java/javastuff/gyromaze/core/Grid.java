@@ -0,0 +1,61 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Cells of a level as the world sees them: walls between the cells, holes and coins in them.
+ * Cell (i, j) is in row i and column j, walls belong to the cell on their top/left.
+ */
+public interface Grid {
+    /**
+     * @return Number of cell rows
+     */
+    int rows();
+
+    /**
+     * @return Number of cell columns
+     */
+    int columns();
+
+    /**
+     * @return True if there is a wall between cells (i, j) and (i, j + 1)
+     */
+    boolean hasVerticalWall(int i, int j);
+
+    /**
+     * @return True if there is a wall between cells (i, j) and (i + 1, j)
+     */
+    boolean hasHorizontalWall(int i, int j);
+
+    /**
+     * @return True if there is a hole in cell (i, j)
+     */
+    boolean hasHole(int i, int j);
+
+    /**
+     * @return Position of the hole inside its cell, from 0 to 1 across the cell
+     */
+    float holeX(int i, int j);
+
+    float holeY(int i, int j);
+
+    /**
+     * @return True if there is a coin left in cell (i, j)
+     */
+    boolean hasCoin(int i, int j);
+
+    /**
+     * @return Position of the coin inside its cell, from 0 to 1 across the cell
+     */
+    float coinX(int i, int j);
+
+    float coinY(int i, int j);
+
+    /**
+     * Removes a collected coin
+     */
+    void collectCoin(int i, int j);
+
+    /**
+     * @return Number of coins to collect to clear the level
+     */
+    int coinCount();
+}
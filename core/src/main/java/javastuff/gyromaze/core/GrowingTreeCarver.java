@@ -0,0 +1,75 @@
+package javastuff.gyromaze.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Growing tree algorithm: keeps a list of cells with possibly unvisited neighbours,
+ * carves from the newest one (long corridors, like the backtracker) or from a random one (short branches, like Prim's).
+ * Easy takes the newest most of the time, Hard half of the time.
+ */
+final class GrowingTreeCarver {
+    private GrowingTreeCarver() {
+    }
+
+    /**
+     * @return Chance to carve from the newest cell instead of a random one
+     */
+    private static double newest(Difficulty difficulty) {
+        switch (difficulty) {
+            case Easy:
+                return 0.9;
+            case Medium:
+                return 0.75;
+            default:
+                return 0.5;
+        }
+    }
+
+    static void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+        int count = maze.width * maze.height;
+        double newest = newest(difficulty);
+        int[] cells = new int[Math.min(count, 1024)];
+        int[] adj = new int[4];
+        // cells done with are marked -1 and left in place, so the others keep their order and the newest stays last
+        int size = 0, done = 0;
+
+        int start = random.nextInt(count);
+        maze.visit(start);
+        cells[size++] = start;
+        while (size > 0) {
+            int k = size - 1;
+            if (random.nextDouble() >= newest) {
+                // at most half of the list is marked, so this takes two tries on average
+                do {
+                    k = random.nextInt(size);
+                } while (cells[k] < 0);
+            }
+            int c = cells[k];
+            int found = maze.AdjacentCells(c, adj);
+            if (found == 0) {
+                cells[k] = -1;
+                done++;
+                while (size > 0 && cells[size - 1] < 0) {
+                    size--;
+                    done--;
+                }
+                if (done * 2 > size) {
+                    int live = 0;
+                    for (int m = 0; m < size; m++)
+                        if (cells[m] >= 0)
+                            cells[live++] = cells[m];
+                    size = live;
+                    done = 0;
+                }
+                continue;
+            }
+            int n = adj[random.nextInt(found)];
+            maze.RemoveWall(c, n);
+            maze.visit(n);
+            if (size == cells.length)
+                cells = Arrays.copyOf(cells, Math.min(cells.length * 2, count));
+            cells[size++] = n;
+        }
+    }
+}
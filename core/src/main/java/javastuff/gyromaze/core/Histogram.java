@@ -0,0 +1,132 @@
+package javastuff.gyromaze.core;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Distribution of durations (or any positive values) with a fixed relative precision, in the spirit of HdrHistogram.
+ * Values below 64 are counted exactly, larger ones in 64 buckets per power of two (precision under 1.6 %).
+ * Recording takes constant time and allocates nothing, so it can run on every frame and physics step.
+ * One thread records, others may read a slightly stale picture.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS;
+    /**
+     * Largest value kept apart, about 18 minutes in nanoseconds, larger ones share the last bucket
+     */
+    private static final int MAX_BITS = 40;
+
+    private final long[] counts = new long[SUB + (MAX_BITS - SUB_BITS + 1) * SUB];
+    private long count, sum, max;
+
+    /**
+     * Adds a value
+     * @param value Value, negative ones count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts[Math.min(index(value), counts.length - 1)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Forgets all values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = sum = max = 0;
+    }
+
+    /**
+     * Adds all values of another histogram
+     * @param other Histogram not recorded into meanwhile
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    private static int index(long value) {
+        if (value < SUB)
+            return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        return SUB + (exp - SUB_BITS) * SUB + (int) ((value >>> (exp - SUB_BITS)) - SUB);
+    }
+
+    /**
+     * @return Largest value counted in the bucket
+     */
+    private static long highest(int index) {
+        if (index < SUB)
+            return index;
+        int exp = (index - SUB) / SUB + SUB_BITS;
+        long lowest = (long) (SUB + (index - SUB) % SUB) << (exp - SUB_BITS);
+        return lowest + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile Percentile from 0 to 100
+     * @return Value that the given percentage of values does not exceed, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(highest(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Writes the percentile distribution in the text form of HdrHistogram, so its plotting tools can read it.
+     * Percentiles get finer towards the tail (5 steps per halving of the rest).
+     * @param out Where to write
+     * @param scale Values are divided by it (e.g. 1e6 for nanoseconds in milliseconds)
+     */
+    public void write(PrintWriter out, double scale) {
+        out.println(String.format(Locale.US, "%12s %14s %10s %14s", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        out.println();
+        if (count > 0) {
+            long seen = 0;
+            double next = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0)
+                    continue;
+                seen += counts[i];
+                double reached = (double) seen / count;
+                if (reached >= next && seen < count) {
+                    out.println(String.format(Locale.US, "%12.3f %2.12f %10d %14.2f",
+                            Math.min(highest(i), max) / scale, reached, seen, 1 / (1 - reached)));
+                    // halving the rest gives 5 more lines
+                    double rest = 1 - reached;
+                    double half = Math.pow(2, Math.floor(Math.log(1 / rest) / Math.log(2)) + 1);
+                    next = reached + 1 / half / 5;
+                }
+            }
+            out.println(String.format(Locale.US, "%12.3f %2.12f %10d", max / scale, 1.0, count));
+        }
+        out.println(String.format(Locale.US, "#[Mean    = %12.3f, Max            = %12.3f]", mean() / scale, max / scale));
+        out.println(String.format(Locale.US, "#[Total count    = %12d]", count));
+    }
+}
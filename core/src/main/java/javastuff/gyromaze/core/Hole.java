@@ -1,18 +1,14 @@
-package javastuff.gyromaze;
-
-import android.content.Context;
-import android.view.View;
+package javastuff.gyromaze.core;
 
 /**
  * Hole in the floor, game ends upon collision
  */
-class Hole extends View {
+public class Hole {
     public float diameter;
     public float X;
     public float Y;
 
-    public Hole(Context context, float diameter, float X, float Y) {
-        super(context);
+    public Hole(float diameter, float X, float Y) {
         this.diameter = diameter;
         this.X = X;
         this.Y = Y;
@@ -26,6 +22,8 @@ class Hole extends View {
      */
     public boolean collides(Ball b)
     {
-        return Math.sqrt(Math.pow(X - b.X,2) + Math.pow(Y - b.Y,2)) < diameter;
+        // compare squared distances, no need for a root
+        float dx = X - b.X, dy = Y - b.Y;
+        return dx * dx + dy * dy < diameter * diameter;
     }
 }
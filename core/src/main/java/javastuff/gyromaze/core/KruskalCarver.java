@@ -0,0 +1,43 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+
+/**
+ * Randomized Kruskal's algorithm: every wall is visited in random order and removed
+ * if the cells on its sides are not connected yet. Union-find tells which cells are.
+ * Gives many short dead ends, takes about n log n random numbers and 12 bytes per cell.
+ */
+final class KruskalCarver {
+    private KruskalCarver() {
+    }
+
+    static void carve(MazeGenerator maze, Random random) {
+        int width = maze.width, height = maze.height, count = width * height;
+        // wall c is the one towards x + 1 of cell c, wall count + c the one towards y + 1
+        int[] walls = new int[2 * count];
+        int size = 0;
+        for (int c = 0; c < count; c++) {
+            if (c / height < width - 1)
+                walls[size++] = c;
+            if (c % height < height - 1)
+                walls[size++] = count + c;
+        }
+
+        UnionFind sets = new UnionFind(count);
+        // Fisher-Yates shuffle, drawn lazily so it can stop once the maze is connected
+        int removed = 0;
+        for (int k = 0; k < size && removed < count - 1; k++) {
+            int r = k + random.nextInt(size - k);
+            int wall = walls[r];
+            walls[r] = walls[k];
+            walls[k] = wall;
+
+            int c = wall < count ? wall : wall - count;
+            int n = wall < count ? c + height : c + 1;
+            if (sets.union(c, n)) {
+                maze.RemoveWall(c, n);
+                removed++;
+            }
+        }
+    }
+}
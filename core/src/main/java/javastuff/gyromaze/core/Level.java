@@ -0,0 +1,214 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Layout of one finite level: maze, holes and coins.
+ * Built from a seed only, so the same seed and settings always give the same level.
+ * Positions are relative to cells, the world turns them into pixels.
+ * Kept in the form StoredLevel writes, bits and bytes per cell, so a level takes
+ * about 4.5 bytes a cell (1.1 MB at 500x500) and is written out with no conversion.
+ */
+public class Level implements Grid {
+    /**
+     * Chance of a coin in a cell
+     */
+    public static final float COIN_CHANCE = 0.5f;
+    /**
+     * Mazes of this many cells and more are carved in tiles (TiledCarver), which is faster even on one core
+     * as a tile fits in the cache. The tiles depend on the size only, so a seed gives the same level everywhere.
+     */
+    public static final int TILED_CELLS = 1024 * 1024;
+    /**
+     * Number of cells along each side of a tile
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Settings the level was built from
+     */
+    public final long seed;
+    public final Difficulty difficulty;
+    public final MazeAlgorithm algorithm;
+    public final int cellsX, cellsY;
+    /**
+     * Size of the tiles the maze was carved in, 0 if it was carved whole
+     */
+    public final int tileSize;
+    /**
+     * Generated maze
+     */
+    public final MazeGenerator maze;
+    /**
+     * Cells with a hole/coin have their bit set, cell (i, j) has index i * cellsY + j.
+     * The world clears a coin once it is collected.
+     */
+    public final long[] holes, coins;
+    /**
+     * Number of coins the level was built with
+     */
+    public final int coinCount;
+    /**
+     * Position of the hole/coin inside its cell, in 255ths of the cell as unsigned bytes
+     */
+    public final byte[] holeX, holeY, coinX, coinY;
+
+    /**
+     * Builds the level with the recursive backtracker maze
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     */
+    public Level(long seed, Difficulty difficulty, int cellsX, int cellsY) {
+        this(seed, difficulty, MazeAlgorithm.Backtracker, cellsX, cellsY);
+    }
+
+    /**
+     * Builds the level, a large maze is carved in tiles on the calling thread
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param algorithm Algorithm carving the maze
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     */
+    public Level(long seed, Difficulty difficulty, MazeAlgorithm algorithm, int cellsX, int cellsY) {
+        this(seed, difficulty, algorithm, cellsX, cellsY, null);
+    }
+
+    /**
+     * Builds the level
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param algorithm Algorithm carving the maze, or each tile of a large one
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     * @param pool Pool carving the tiles of a large maze, null carves them on the calling thread
+     */
+    public Level(long seed, Difficulty difficulty, MazeAlgorithm algorithm, int cellsX, int cellsY, ForkJoinPool pool) {
+        this.seed = seed;
+        this.difficulty = difficulty;
+        this.algorithm = algorithm;
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        tileSize = tileSize(cellsX, cellsY);
+        Random random = new Random(seed);
+        int count = cellsX * cellsY, words = (count + 63) >>> 6;
+
+        // holes, never in the starting cell
+        holes = new long[words];
+        holeX = new byte[count];
+        holeY = new byte[count];
+        for (int c = 1; c < count; c++) {
+            if (random.nextFloat() >= difficulty.holeChance)
+                continue;
+            holes[c >>> 6] |= 1L << c;
+            holeX[c] = quantize(random.nextFloat());
+            holeY[c] = quantize(random.nextFloat());
+        }
+
+        // coins
+        coins = new long[words];
+        coinX = new byte[count];
+        coinY = new byte[count];
+        int coinCount = 0;
+        for (int c = 0; c < count; c++) {
+            if (random.nextFloat() < COIN_CHANCE)
+                continue;
+            coins[c >>> 6] |= 1L << c;
+            coinX[c] = quantize(random.nextFloat());
+            coinY[c] = quantize(random.nextFloat());
+            coinCount++;
+        }
+        this.coinCount = coinCount;
+
+        // maze
+        maze = new MazeGenerator(cellsX, cellsY, random.nextLong());
+        maze.Generate(difficulty, tileSize > 0 ? new TiledCarver(algorithm, tileSize, pool) : algorithm);
+    }
+
+    /**
+     * @return Size of the tiles a maze of the given size is carved in, 0 if it is carved whole
+     */
+    public static int tileSize(int cellsX, int cellsY) {
+        return (long) cellsX * cellsY >= TILED_CELLS ? TILE_SIZE : 0;
+    }
+
+    /**
+     * @param v Position from 0 to 1
+     * @return Nearest number of 255ths, as an unsigned byte
+     */
+    private static byte quantize(float v) {
+        return (byte) Math.round(v * 255);
+    }
+
+    private static boolean bit(long[] bits, int c) {
+        return (bits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private static float position(byte[] positions, int c) {
+        return (positions[c] & 0xFF) / 255f;
+    }
+
+    @Override
+    public int rows() {
+        return cellsX;
+    }
+
+    @Override
+    public int columns() {
+        return cellsY;
+    }
+
+    @Override
+    public boolean hasVerticalWall(int i, int j) {
+        return i >= 0 && i < cellsX && j >= 0 && j < cellsY - 1 && !maze.IsVerticalWallRemoved(i, j);
+    }
+
+    @Override
+    public boolean hasHorizontalWall(int i, int j) {
+        return i >= 0 && i < cellsX - 1 && j >= 0 && j < cellsY && !maze.IsHorizontalWallRemoved(i, j);
+    }
+
+    @Override
+    public boolean hasHole(int i, int j) {
+        return bit(holes, i * cellsY + j);
+    }
+
+    @Override
+    public float holeX(int i, int j) {
+        return position(holeX, i * cellsY + j);
+    }
+
+    @Override
+    public float holeY(int i, int j) {
+        return position(holeY, i * cellsY + j);
+    }
+
+    @Override
+    public boolean hasCoin(int i, int j) {
+        return bit(coins, i * cellsY + j);
+    }
+
+    @Override
+    public float coinX(int i, int j) {
+        return position(coinX, i * cellsY + j);
+    }
+
+    @Override
+    public float coinY(int i, int j) {
+        return position(coinY, i * cellsY + j);
+    }
+
+    @Override
+    public void collectCoin(int i, int j) {
+        int c = i * cellsY + j;
+        coins[c >>> 6] &= ~(1L << c);
+    }
+
+    @Override
+    public int coinCount() {
+        return coinCount;
+    }
+}
@@ -0,0 +1,160 @@
+package javastuff.gyromaze.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Levels stored on disk, one memory-mapped file per seed, difficulty, maze algorithm and size.
+ * A level that was played before opens without running the generator and without parsing,
+ * the operating system reads in the pages of the file as they are looked at.
+ */
+public class LevelCache {
+    /**
+     * Smaller levels are generated faster than they are read, they are not stored
+     */
+    public static final int MIN_CELLS = 256 * 256;
+    /**
+     * Number of files kept, the oldest are deleted
+     */
+    private static final int MAX_FILES = 16;
+    /**
+     * Temporary files older than this are left from a write that never finished, younger ones may still be written
+     */
+    static final long STALE_TMP_MILLIS = 10 * 60 * 1000;
+
+    private final File dir;
+
+    /**
+     * @param dir Directory of the files, created if missing
+     */
+    public LevelCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Gives the level stored for the settings, generates and stores it if there is none.
+     * Safe to call from several threads, the worst case is that a level is generated twice.
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param algorithm Algorithm carving the maze
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     * @return Level, generated in memory if it can not be stored
+     */
+    public Grid get(long seed, Difficulty difficulty, MazeAlgorithm algorithm, int cellsX, int cellsY) {
+        return get(seed, difficulty, algorithm, cellsX, cellsY, null);
+    }
+
+    /**
+     * Gives the level stored for the settings, generates and stores it if there is none
+     * @param seed Random seed
+     * @param difficulty Difficulty settings
+     * @param algorithm Algorithm carving the maze
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     * @param pool Pool carving the tiles of a large maze, null carves them on the calling thread
+     * @return Level, generated in memory if it can not be stored
+     */
+    public Grid get(long seed, Difficulty difficulty, MazeAlgorithm algorithm, int cellsX, int cellsY, ForkJoinPool pool) {
+        if ((long) cellsX * cellsY < MIN_CELLS)
+            return new Level(seed, difficulty, algorithm, cellsX, cellsY, pool);
+
+        File file = new File(dir, seed + "-" + difficulty + "-" + algorithm + "-" + cellsX + "x" + cellsY + ".lvl");
+        if (file.exists()) {
+            try {
+                StoredLevel level = new StoredLevel(map(file));
+                if (level.seed == seed && level.difficulty == difficulty && level.algorithm == algorithm
+                        && level.cellsX == cellsX && level.cellsY == cellsY
+                        && level.tileSize == Level.tileSize(cellsX, cellsY))
+                    return level;
+            } catch (IOException | IllegalArgumentException e) {
+                // damaged or from an older version, build it again
+            }
+        }
+
+        Level level = new Level(seed, difficulty, algorithm, cellsX, cellsY, pool);
+        try {
+            store(level, file);
+            return new StoredLevel(map(file));
+        } catch (IOException e) {
+            return level;
+        }
+    }
+
+    /**
+     * Maps a file copy-on-write, collected coins are cleared in memory only.
+     * Such mapping needs a writable channel even though the file is never written.
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = f.getChannel();
+            return channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size());
+        } finally {
+            // the mapping stays valid after the file is closed
+            f.close();
+        }
+    }
+
+    /**
+     * Writes a level into a temporary file and renames it, so a half written file is never read.
+     * The pages and the file size are forced to the disk first, otherwise a crash after the rename
+     * could leave a complete name over missing data.
+     */
+    private void store(Level level, File file) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can not create " + dir);
+        trim();
+        File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        RandomAccessFile f = new RandomAccessFile(tmp, "rw");
+        try {
+            FileChannel channel = f.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, StoredLevel.size(level.cellsX, level.cellsY));
+            StoredLevel.write(level, buffer);
+            buffer.force();
+            channel.force(true);
+        } finally {
+            f.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Can not store " + file);
+        }
+    }
+
+    /**
+     * Deletes temporary files left by writes that never finished
+     * and the oldest levels so that a new one fits under MAX_FILES
+     */
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        long stale = System.currentTimeMillis() - STALE_TMP_MILLIS;
+        int count = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(".tmp"))
+                files[count++] = file;
+            else if (file.lastModified() < stale)
+                file.delete();
+        }
+        if (count < MAX_FILES)
+            return;
+        Arrays.sort(files, 0, count, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long ma = a.lastModified(), mb = b.lastModified();
+                return ma < mb ? -1 : (ma == mb ? 0 : 1);
+            }
+        });
+        for (int i = 0; i <= count - MAX_FILES; i++)
+            files[i].delete();
+    }
+}
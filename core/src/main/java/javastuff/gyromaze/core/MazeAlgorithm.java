@@ -0,0 +1,56 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+
+/**
+ * Maze algorithms a level can be built with.
+ * They give differently shaped mazes: long corridors (Backtracker, Eller on Easy),
+ * many short dead ends (Kruskal, growing tree on Hard) or no bias at all (Wilson).
+ */
+public enum MazeAlgorithm implements MazeCarver {
+    /**
+     * Recursive backtracker, the original generator
+     */
+    Backtracker {
+        @Override
+        public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+            maze.backtrack(random, difficulty);
+        }
+    },
+    /**
+     * Loop-erased random walks, every possible maze is equally likely
+     */
+    Wilson {
+        @Override
+        public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+            WilsonCarver.carve(maze, random);
+        }
+    },
+    /**
+     * Walls removed in random order unless they would close a loop, kept track of with union-find
+     */
+    Kruskal {
+        @Override
+        public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+            KruskalCarver.carve(maze, random);
+        }
+    },
+    /**
+     * One row at a time, keeping only the current row in memory
+     */
+    Eller {
+        @Override
+        public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+            EllerRows.carve(maze, random, difficulty);
+        }
+    },
+    /**
+     * Grows from a list of cells, taking the newest (like the backtracker) or a random one (like Prim's)
+     */
+    GrowingTree {
+        @Override
+        public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+            GrowingTreeCarver.carve(maze, random, difficulty);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+
+/**
+ * Way of carving a maze.
+ * An implementation removes walls of a MazeGenerator until every cell is connected to every other by exactly one route.
+ */
+public interface MazeCarver {
+    /**
+     * Carves the maze, called once by MazeGenerator.Generate()
+     * @param maze Maze with all walls in place
+     * @param random Random source of the maze, the same seed must give the same maze
+     * @param difficulty Difficulty settings, an algorithm may bias the shape of the maze by them
+     */
+    void carve(MazeGenerator maze, Random random, Difficulty difficulty);
+}
@@ -0,0 +1,249 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+
+/**
+ * Generates random rectangular maze.
+ * Cell (x, y) has index x * height + y, cell states and walls are kept as bits under that index
+ * and the backtracking stack holds plain indexes, so generation allocates nothing per cell.
+ * The walls are carved by a recursive backtracker unless another MazeAlgorithm is given.
+ */
+public class MazeGenerator {
+    private Random random;
+    /**
+     * Number of cells along x and y
+     */
+    public final int width, height;
+
+    /**
+     * Visited cells have their bit set
+     */
+    private long[] cells;
+
+    /**
+     * Removed walls have their bit set.
+     * Horizontal wall of a cell separates it from the cell at x + 1, vertical wall from the cell at y + 1.
+     */
+    public long[] horizontalWalls,verticalWalls;
+
+    /**
+     * Neighbours of the current cell, reused on each step
+     */
+    private final int[] adj = new int[4];
+
+    public MazeGenerator(int w, int h) {
+        this(w, h, new Random());
+    }
+
+    /**
+     * Generator that always builds the same maze for the same seed
+     * @param w Width
+     * @param h Height
+     * @param seed Random seed
+     */
+    public MazeGenerator(int w, int h, long seed) {
+        this(w, h, new Random(seed));
+    }
+
+    private MazeGenerator(int w, int h, Random random) {
+        this.random = random;
+        width = w;
+        height = h;
+        cells = new long[bitsFor(w * h)];
+        horizontalWalls = new long[bitsFor(w * h)];
+        verticalWalls = new long[bitsFor(w * h)];
+    }
+
+    /**
+     * @param n Number of bits
+     * @return Number of longs needed to hold them
+     */
+    private static int bitsFor(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Generates random maze with the recursive backtracker.
+     * Can be called once only!
+     * @param d Difficulty settings
+     */
+    public void Generate(Difficulty d) {
+        Generate(d, MazeAlgorithm.Backtracker);
+    }
+
+    /**
+     * Generates random maze.
+     * Can be called once only!
+     * @param d Difficulty settings
+     * @param carver Algorithm removing the walls
+     */
+    public void Generate(Difficulty d, MazeCarver carver) {
+        carver.carve(this, random, d);
+    }
+
+    /**
+     * Carves the maze by a depth-first search that walks to a random unvisited neighbour and backtracks from dead ends.
+     * Easy and Medium prefer the first neighbour found, which gives long straight corridors.
+     */
+    void backtrack(Random random, Difficulty d) {
+        int current = random.nextInt(width) * height + random.nextInt(height);
+        set(cells, current);
+        int[] stack = new int[Math.min(width * height, 1024)];
+        int top = 0;
+        for (int visited = 1; visited < width * height; ++visited) {
+            int size = AdjacentCells(current, adj);
+            if (size > 0) {
+                int n;
+                switch (d){
+
+                    case Easy:
+                        if(random.nextDouble() < 0.8)
+                            n = adj[0];
+                        else
+                            n = adj[random.nextInt(size) % 2];
+                        break;
+
+                    case Medium:
+                        if(random.nextDouble() < 0.7)
+                            n = adj[0];
+                        else
+                            n = adj[random.nextInt(size)];
+                        break;
+
+                    default:
+                        n = adj[random.nextInt(size)];
+                        break;
+                }
+
+                if (top == stack.length) {
+                    int[] bigger = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, bigger, 0, top);
+                    stack = bigger;
+                }
+                stack[top++] = current;
+                RemoveWall(n, current);
+                current = n;
+                set(cells, current);
+            } else {
+                current = stack[--top];
+                --visited;
+            }
+        }
+    }
+
+    /**
+     * @return True if the cell was marked visited
+     */
+    boolean visited(int c) {
+        return get(cells, c);
+    }
+
+    void visit(int c) {
+        set(cells, c);
+    }
+
+    /**
+     * Fills adj with unvisited neighbours of a cell, in order left, right, up, down
+     * @param c Cell index
+     * @param adj Receives the neighbours, room for 4
+     * @return Number of neighbours found
+     */
+    int AdjacentCells(int c, int[] adj) {
+        int x = c / height, y = c % height;
+        int size = 0;
+        if (x > 0 && !get(cells, c - height))
+            adj[size++] = c - height;
+        if (x < width - 1 && !get(cells, c + height))
+            adj[size++] = c + height;
+        if (y > 0 && !get(cells, c - 1))
+            adj[size++] = c - 1;
+        if (y < height - 1 && !get(cells, c + 1))
+            adj[size++] = c + 1;
+        return size;
+    }
+
+    /**
+     * removes wall between given neighbouring cells
+     *
+     * @param c Cell index
+     * @param c2 Cell index
+     */
+    public void RemoveWall(int c, int c2) {
+        // the wall belongs to the cell with lower index
+        if (Math.abs(c - c2) == height)
+            set(horizontalWalls, Math.min(c, c2));
+        else
+            set(verticalWalls, Math.min(c, c2));
+    }
+
+    /**
+     * @param x Cell x
+     * @param y Cell y
+     * @return True if wall between (x, y) and (x + 1, y) is not present
+     */
+    public boolean IsHorizontalWallRemoved(int x, int y) {
+        return get(horizontalWalls, x * height + y);
+    }
+
+    /**
+     * @param x Cell x
+     * @param y Cell y
+     * @return True if wall between (x, y) and (x, y + 1) is not present
+     */
+    public boolean IsVerticalWallRemoved(int x, int y) {
+        return get(verticalWalls, x * height + y);
+    }
+
+    /**
+     * @param c
+     * @param c2
+     * @return True if wall is not present between given cells
+     */
+    public boolean IsWallRemoved(Cell c, Cell c2) {
+        if (c.Y == c2.Y)
+            return IsHorizontalWallRemoved(Math.min(c.X, c2.X), c.Y);
+        if (c.X == c2.X)
+            return IsVerticalWallRemoved(c.X, Math.min(c.Y, c2.Y));
+        return false;
+    }
+
+    /**
+     * Prints maze to the console
+     */
+    public void Print() {
+        for (int x = 0; x <= 2 * width; x++)
+            System.out.print("_");
+        System.out.println();
+        for (int y = 0; y < height; y++) {
+            System.out.print("|");
+            for (int x = 0; x < width; x++) {
+                if (IsVerticalWallRemoved(x, y))
+                    System.out.print(" ");
+                else
+                    System.out.print("_");
+                if (IsHorizontalWallRemoved(x, y))
+                    System.out.print("_");
+                else
+                    System.out.print("|");
+            }
+            System.out.println();
+        }
+    }
+
+    public class Cell {
+        public int X, Y;
+
+        public Cell(int x, int y) {
+            X = x;
+            Y = y;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package javastuff.gyromaze.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Everything a world was given during a game: its settings and seed, sensor values of each physics step
+ * and changes of the area the ball is kept in.
+ * The world is deterministic, so replaying a recording goes through the very same game.
+ *
+ * Steps are kept in runs of equal inputs, a run takes 21 bytes and the sensor changes a few dozen times a second.
+ */
+public class Recording {
+    private static final int MAGIC = 0x474D5252; // "GMRR"
+    /**
+     * Goes up whenever the same inputs would play differently: 2 added the maze algorithm,
+     * 3 came with merged walls, which resolve collisions differently, and with tiled huge mazes
+     */
+    static final int VERSION = 3;
+    /**
+     * Kinds of events in the stream
+     */
+    private static final byte RUN = 1, BOUNDS = 2, END = 3;
+
+    /**
+     * Settings of the world, see World(cellsX, cellsY, viewWidth, viewHeight, visibleX, visibleY, difficulty, seed)
+     */
+    public final int cellsX, cellsY, viewWidth, viewHeight, visibleX, visibleY;
+    public final Difficulty difficulty;
+    public final long seed;
+    /**
+     * Algorithm carving the mazes
+     */
+    public final MazeAlgorithm algorithm;
+    /**
+     * Endless level instead of levels
+     */
+    public final boolean endless;
+
+    /**
+     * Recorded events
+     */
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream events;
+    /**
+     * Run of steps not written yet
+     */
+    private float runX, runY;
+    private double runDelta;
+    private int runLength;
+    private float boundsWidth = -1, boundsHeight = -1;
+    /**
+     * Number of steps recorded
+     */
+    private long steps;
+
+    /**
+     * Starts an empty recording of a world built with the given settings
+     */
+    public Recording(int cellsX, int cellsY, int viewWidth, int viewHeight, int visibleX, int visibleY,
+                     Difficulty difficulty, MazeAlgorithm algorithm, long seed, boolean endless) {
+        this(cellsX, cellsY, viewWidth, viewHeight, visibleX, visibleY, difficulty, algorithm, seed, endless,
+                new ByteArrayOutputStream());
+    }
+
+    private Recording(int cellsX, int cellsY, int viewWidth, int viewHeight, int visibleX, int visibleY,
+                      Difficulty difficulty, MazeAlgorithm algorithm, long seed, boolean endless, ByteArrayOutputStream bytes) {
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.visibleX = visibleX;
+        this.visibleY = visibleY;
+        this.difficulty = difficulty;
+        this.algorithm = algorithm;
+        this.seed = seed;
+        this.endless = endless;
+        this.bytes = bytes;
+        events = new DataOutputStream(bytes);
+    }
+
+    /**
+     * @return New world with the recorded settings, without a level
+     */
+    public World newWorld() {
+        World world = new World(cellsX, cellsY, viewWidth, viewHeight, visibleX, visibleY, difficulty, seed);
+        world.algorithm = algorithm;
+        return world;
+    }
+
+    /**
+     * Records a step, called by the world from the thread that runs the steps
+     */
+    void step(float sensorX, float sensorY, double delta, float boundsWidth, float boundsHeight) {
+        try {
+            if (boundsWidth != this.boundsWidth || boundsHeight != this.boundsHeight) {
+                flush();
+                events.writeByte(BOUNDS);
+                events.writeFloat(boundsWidth);
+                events.writeFloat(boundsHeight);
+                this.boundsWidth = boundsWidth;
+                this.boundsHeight = boundsHeight;
+            }
+            if (runLength > 0 && (sensorX != runX || sensorY != runY || delta != runDelta))
+                flush();
+            runX = sensorX;
+            runY = sensorY;
+            runDelta = delta;
+            runLength++;
+            steps++;
+        } catch (IOException e) {
+            // written into memory, can not happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (runLength == 0)
+            return;
+        events.writeByte(RUN);
+        events.writeFloat(runX);
+        events.writeFloat(runY);
+        events.writeDouble(runDelta);
+        events.writeInt(runLength);
+        runLength = 0;
+    }
+
+    /**
+     * Ends the recording with the state the game ended in, a replay is checked against it
+     * @param world Recorded world, must not be stepped anymore
+     */
+    public void finish(World world) {
+        try {
+            flush();
+            events.writeByte(END);
+            events.writeLong(steps);
+            events.writeInt(world.score);
+            events.writeFloat(world.ball.X);
+            events.writeFloat(world.ball.Y);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the recording
+     * @param out Stream to write to, not closed
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(cellsX);
+        data.writeInt(cellsY);
+        data.writeInt(viewWidth);
+        data.writeInt(viewHeight);
+        data.writeInt(visibleX);
+        data.writeInt(visibleY);
+        data.writeInt(difficulty.ordinal());
+        data.writeInt(algorithm.ordinal());
+        data.writeLong(seed);
+        data.writeBoolean(endless);
+        data.writeInt(bytes.size());
+        bytes.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Reads a recording written by write()
+     * @param in Stream to read from, not closed
+     * @return Recording that can be replayed
+     * @throws IOException If the stream does not hold a recording of this version,
+     * an older one would not play the same with the current physics
+     */
+    public static Recording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a recording");
+        int version = data.readInt();
+        if (version < VERSION)
+            throw new IOException("Recording of version " + version + " was played with older physics, only version "
+                    + VERSION + " replays");
+        if (version > VERSION)
+            throw new IOException("Recording of unknown version " + version);
+        int cellsX = data.readInt(), cellsY = data.readInt();
+        int viewWidth = data.readInt(), viewHeight = data.readInt();
+        int visibleX = data.readInt(), visibleY = data.readInt();
+        Difficulty difficulty = stored(Difficulty.values(), data.readInt());
+        MazeAlgorithm algorithm = stored(MazeAlgorithm.values(), data.readInt());
+        long seed = data.readLong();
+        boolean endless = data.readBoolean();
+        int length = data.readInt();
+        if (length < 0)
+            throw new IOException("Recording of " + length + " bytes");
+        byte[] events = new byte[length];
+        data.readFully(events);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(events.length);
+        bytes.write(events, 0, events.length);
+        return new Recording(cellsX, cellsY, viewWidth, viewHeight, visibleX, visibleY, difficulty, algorithm, seed, endless, bytes);
+    }
+
+    /**
+     * @return Constant recorded by its ordinal
+     * @throws IOException If there is no such constant, the recording is damaged
+     */
+    private static <E> E stored(E[] values, int ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IOException("No constant " + ordinal + " of " + values.length);
+        return values[ordinal];
+    }
+
+    /**
+     * Goes through the recorded events
+     * @param player Receives the events in order
+     */
+    void play(Player player) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        while (true) {
+            byte kind;
+            try {
+                kind = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            switch (kind) {
+                case RUN:
+                    float x = in.readFloat(), y = in.readFloat();
+                    double delta = in.readDouble();
+                    player.run(x, y, delta, in.readInt());
+                    break;
+                case BOUNDS:
+                    player.bounds(in.readFloat(), in.readFloat());
+                    break;
+                case END:
+                    player.end(in.readLong(), in.readInt(), in.readFloat(), in.readFloat());
+                    return;
+                default:
+                    throw new IOException("Damaged recording");
+            }
+        }
+    }
+
+    /**
+     * Receiver of recorded events
+     */
+    interface Player {
+        void run(float sensorX, float sensorY, double delta, int steps);
+
+        void bounds(float width, float height);
+
+        void end(long steps, int score, float ballX, float ballY);
+    }
+}
@@ -0,0 +1,127 @@
+package javastuff.gyromaze.core;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Plays recorded games without a screen and as fast as the physics runs.
+ * Levels follow in the order the game used, so a replay ends in the same state as the recorded game.
+ * Run as a program, it replays the given recording files and fails if any of them ends differently.
+ * Recordings of older versions are skipped, they were played with other physics.
+ */
+public class Replay {
+    /**
+     * How a replay ended
+     */
+    public static class Outcome {
+        /**
+         * Number of steps played, final score and ball position
+         */
+        public final long steps;
+        public final int score;
+        public final float ballX, ballY;
+        /**
+         * True if the ball fell into a hole
+         */
+        public final boolean fallen;
+        /**
+         * True if the recording holds the end of the game and the replay ended the same way
+         */
+        public final boolean matches;
+        /**
+         * Time the replay took in nanoseconds
+         */
+        public final long time;
+
+        Outcome(long steps, int score, float ballX, float ballY, boolean fallen, boolean matches, long time) {
+            this.steps = steps;
+            this.score = score;
+            this.ballX = ballX;
+            this.ballY = ballY;
+            this.fallen = fallen;
+            this.matches = matches;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Replays a recording
+     * @param recording Recording to play
+     * @return How it ended
+     * @throws IOException If the recording is damaged
+     */
+    public static Outcome run(Recording recording) throws IOException {
+        final World world = recording.newWorld();
+        final boolean endless = recording.endless;
+        world.initialize(endless ? world.endlessLevel() : world.nextLevel());
+
+        final long[] steps = {0};
+        final boolean[] fallen = {false}, matches = {false};
+        long start = System.nanoTime();
+        recording.play(new Recording.Player() {
+            @Override
+            public void run(float sensorX, float sensorY, double delta, int count) {
+                for (int k = 0; k < count && !fallen[0]; k++) {
+                    steps[0]++;
+                    switch (world.step(sensorX, sensorY, delta)) {
+                        case cleared:
+                            // the game swaps in the next level right away
+                            world.initialize(world.nextLevel());
+                            break;
+                        case fallen:
+                            // game's over, nothing else was stepped
+                            fallen[0] = true;
+                            break;
+                    }
+                }
+            }
+
+            @Override
+            public void bounds(float width, float height) {
+                world.setBounds(width, height);
+            }
+
+            @Override
+            public void end(long count, int score, float ballX, float ballY) {
+                matches[0] = count == steps[0] && score == world.score && ballX == world.ball.X && ballY == world.ball.Y;
+            }
+        });
+        long time = System.nanoTime() - start;
+        return new Outcome(steps[0], world.score, world.ball.X, world.ball.Y, fallen[0], matches[0], time);
+    }
+
+    /**
+     * Replays recording files and reports how each ended and how fast it played
+     * @param args Paths of the recordings
+     */
+    public static void main(String[] args) throws IOException {
+        int failed = 0, skipped = 0;
+        long steps = 0, time = 0;
+        for (String path : args) {
+            InputStream in = new BufferedInputStream(new FileInputStream(path));
+            Recording recording;
+            try {
+                recording = Recording.read(in);
+            } catch (IOException e) {
+                skipped++;
+                System.out.println(path + ": skipped, " + e.getMessage());
+                continue;
+            } finally {
+                in.close();
+            }
+            Outcome o = run(recording);
+            steps += o.steps;
+            time += o.time;
+            if (!o.matches)
+                failed++;
+            System.out.println(String.format("%s: %d steps, score %d, %s, %.0f steps/s",
+                    path, o.steps, o.score, o.matches ? "same" : "DIFFERENT", o.steps / (o.time / 1e9)));
+        }
+        System.out.println(String.format("%d recordings, %d different, %d skipped, %.0f steps/s",
+                args.length, failed, skipped, steps / (time / 1e9)));
+        if (failed > 0)
+            System.exit(1);
+    }
+}
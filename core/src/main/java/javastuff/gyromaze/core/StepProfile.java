@@ -0,0 +1,51 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Time spent in the parts of physics steps.
+ * Given to a world, it measures each step with System.nanoTime() and keeps the durations in histograms.
+ */
+public class StepProfile {
+    /**
+     * Parts of a step
+     */
+    public enum Phase {reposition, walls, coins, holes, boundary}
+
+    /**
+     * Durations of whole steps and of each of their parts in nanoseconds
+     */
+    public final Histogram steps = new Histogram();
+    public final Histogram[] phases = new Histogram[Phase.values().length];
+    /**
+     * Time spent in each part during the current step, a swept step goes through the parts several times
+     */
+    private final long[] spent = new long[phases.length];
+
+    public StepProfile() {
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new Histogram();
+    }
+
+    /**
+     * Adds time spent in a part of the current step
+     * @param phase Part that just ended
+     * @param start When it started
+     * @return Now, the start of the next part
+     */
+    long lap(Phase phase, long start) {
+        long now = System.nanoTime();
+        spent[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * Records the step that just ended
+     * @param duration Duration of the whole step
+     */
+    void end(long duration) {
+        steps.record(duration);
+        for (int i = 0; i < spent.length; i++) {
+            phases[i].record(spent[i]);
+            spent[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package javastuff.gyromaze.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finite level read straight from its binary form, usually a memory-mapped file.
+ * Nothing is parsed or copied when it is opened, every look at a cell reads the buffer.
+ *
+ * The form is little-endian:
+ * header (magic, version, seed, rows, columns, difficulty, number of coins, maze algorithm, tile size),
+ * bitsets of removed horizontal and vertical walls, holes and coins (as in MazeGenerator),
+ * positions of holes and coins inside their cells as bytes (holeX, holeY, coinX, coinY),
+ * padded to 8 bytes, so levels may follow each other in one file (a level pack).
+ */
+public class StoredLevel implements Grid {
+    private static final int MAGIC = 0x4C5A4D47; // "GMZL"
+    private static final int VERSION = 3;
+    private static final int HEADER = 40;
+
+    public final long seed;
+    public final Difficulty difficulty;
+    public final MazeAlgorithm algorithm;
+    public final int cellsX, cellsY;
+    /**
+     * Size of the tiles the maze was carved in, 0 if it was carved whole
+     */
+    public final int tileSize;
+    private final int coinCount;
+    /**
+     * Level data, collected coins are cleared in it
+     */
+    private final ByteBuffer data;
+    /**
+     * Offsets of the parts of the level
+     */
+    private final int horizontalWalls, verticalWalls, holes, coins, holeX, holeY, coinX, coinY;
+
+    /**
+     * Opens the level at the buffer's position and moves the position behind it
+     * @param buffer Buffer holding the level, writes to it must not reach the file (copy-on-write mapping)
+     * @throws IllegalArgumentException If the buffer does not hold a level of this version
+     */
+    public StoredLevel(ByteBuffer buffer) {
+        data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < HEADER || data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Not a level");
+        seed = data.getLong(8);
+        cellsX = data.getInt(16);
+        cellsY = data.getInt(20);
+        difficulty = stored(Difficulty.values(), data.getInt(24));
+        coinCount = data.getInt(28);
+        algorithm = stored(MazeAlgorithm.values(), data.getInt(32));
+        tileSize = data.getInt(36);
+        if (cellsX <= 0 || cellsY <= 0)
+            throw new IllegalArgumentException("Level of " + cellsX + "x" + cellsY + " cells");
+
+        int count = cellsX * cellsY, words = (count + 63) >>> 6;
+        horizontalWalls = HEADER;
+        verticalWalls = horizontalWalls + words * 8;
+        holes = verticalWalls + words * 8;
+        coins = holes + words * 8;
+        holeX = coins + words * 8;
+        holeY = holeX + count;
+        coinX = holeY + count;
+        coinY = coinX + count;
+        if (data.remaining() < size(cellsX, cellsY))
+            throw new IllegalArgumentException("Level is cut short");
+        buffer.position(buffer.position() + size(cellsX, cellsY));
+    }
+
+    /**
+     * @return Constant stored by its ordinal
+     * @throws IllegalArgumentException If there is no such constant, the file is damaged or foreign
+     */
+    private static <E> E stored(E[] values, int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IllegalArgumentException("No constant " + ordinal + " of " + values.length);
+        return values[ordinal];
+    }
+
+    /**
+     * @return Number of bytes a level of the given size takes
+     */
+    public static int size(int cellsX, int cellsY) {
+        int count = cellsX * cellsY;
+        return (HEADER + ((count + 63) >>> 6) * 8 * 4 + count * 4 + 7) & ~7;
+    }
+
+    /**
+     * Writes a generated level at the buffer's position and moves the position behind it
+     * @param level Level to write, as generated (no coins collected)
+     * @param buffer Buffer with at least size() bytes remaining
+     */
+    public static void write(Level level, ByteBuffer buffer) {
+        ByteBuffer out = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int count = level.cellsX * level.cellsY, words = (count + 63) >>> 6;
+        out.putInt(MAGIC).putInt(VERSION).putLong(level.seed)
+                .putInt(level.cellsX).putInt(level.cellsY)
+                .putInt(level.difficulty.ordinal()).putInt(level.coinCount)
+                .putInt(level.algorithm.ordinal()).putInt(level.tileSize);
+        for (int w = 0; w < words; w++)
+            out.putLong(level.maze.horizontalWalls[w]);
+        for (int w = 0; w < words; w++)
+            out.putLong(level.maze.verticalWalls[w]);
+        for (int w = 0; w < words; w++)
+            out.putLong(level.holes[w]);
+        for (int w = 0; w < words; w++)
+            out.putLong(level.coins[w]);
+        out.put(level.holeX).put(level.holeY).put(level.coinX).put(level.coinY);
+        buffer.position(buffer.position() + size(level.cellsX, level.cellsY));
+    }
+
+    private boolean bit(int part, int c) {
+        return (data.getLong(part + (c >>> 6) * 8) & (1L << c)) != 0;
+    }
+
+    private float position(int part, int c) {
+        return (data.get(part + c) & 0xFF) / 255f;
+    }
+
+    @Override
+    public int rows() {
+        return cellsX;
+    }
+
+    @Override
+    public int columns() {
+        return cellsY;
+    }
+
+    @Override
+    public boolean hasVerticalWall(int i, int j) {
+        return i >= 0 && i < cellsX && j >= 0 && j < cellsY - 1 && !bit(verticalWalls, i * cellsY + j);
+    }
+
+    @Override
+    public boolean hasHorizontalWall(int i, int j) {
+        return i >= 0 && i < cellsX - 1 && j >= 0 && j < cellsY && !bit(horizontalWalls, i * cellsY + j);
+    }
+
+    @Override
+    public boolean hasHole(int i, int j) {
+        return bit(holes, i * cellsY + j);
+    }
+
+    @Override
+    public float holeX(int i, int j) {
+        return position(holeX, i * cellsY + j);
+    }
+
+    @Override
+    public float holeY(int i, int j) {
+        return position(holeY, i * cellsY + j);
+    }
+
+    @Override
+    public boolean hasCoin(int i, int j) {
+        return bit(coins, i * cellsY + j);
+    }
+
+    @Override
+    public float coinX(int i, int j) {
+        return position(coinX, i * cellsY + j);
+    }
+
+    @Override
+    public float coinY(int i, int j) {
+        return position(coinY, i * cellsY + j);
+    }
+
+    @Override
+    public void collectCoin(int i, int j) {
+        int c = i * cellsY + j, at = coins + (c >>> 6) * 8;
+        data.putLong(at, data.getLong(at) & ~(1L << c));
+    }
+
+    @Override
+    public int coinCount() {
+        return coinCount;
+    }
+}
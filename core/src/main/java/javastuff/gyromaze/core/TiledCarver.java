@@ -0,0 +1,182 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Carves a large maze on several cores: the grid is cut into tiles, each tile is carved as a maze of its own
+ * in a fork-join pool and the tiles are then joined by one opening per edge of a random spanning tree of tiles.
+ * Every tile is a spanning tree of its cells, so n - tiles walls are removed inside the tiles and tiles - 1
+ * between them, which keeps the whole maze perfect: all cells connected and no loops.
+ *
+ * Each tile takes a seed drawn from the maze's random before any carving, so the maze only depends on the seed
+ * and tile size, not on the number of threads. Tiles are carved into their own generators and copied into
+ * the maze afterwards, as neighbouring tiles would share words of the wall bits.
+ * Routes between tiles go through single openings, so the tiles can be noticed on small mazes.
+ * Level carves mazes of Level.TILED_CELLS and more this way.
+ */
+public final class TiledCarver implements MazeCarver {
+    private final MazeCarver algorithm;
+    private final int tileSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param algorithm Algorithm carving each tile, it is called from several threads at once
+     * @param tileSize Number of cells along each side of a tile, tiles on the far edges are smaller
+     * @param pool Pool carving the tiles, null carves them one after another on the calling thread
+     */
+    public TiledCarver(MazeCarver algorithm, int tileSize, ForkJoinPool pool) {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Tile size " + tileSize + " is not positive");
+        this.algorithm = algorithm;
+        this.tileSize = tileSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public void carve(MazeGenerator maze, Random random, Difficulty difficulty) {
+        int tilesX = (maze.width + tileSize - 1) / tileSize, tilesY = (maze.height + tileSize - 1) / tileSize;
+        int count = tilesX * tilesY;
+        long[] seeds = new long[count];
+        for (int t = 0; t < count; t++)
+            seeds[t] = random.nextLong();
+
+        MazeGenerator[] tiles = new MazeGenerator[count];
+        if (pool != null) {
+            pool.invoke(new Tiles(maze, tilesY, seeds, difficulty, tiles, 0, count));
+        } else {
+            for (int t = 0; t < count; t++)
+                tiles[t] = tile(maze, tilesY, seeds[t], difficulty, t);
+        }
+        for (int t = 0; t < count; t++) {
+            copy(tiles[t], maze, t / tilesY * tileSize, t % tilesY * tileSize);
+            tiles[t] = null;
+        }
+        stitch(maze, random, tilesX, tilesY);
+    }
+
+    /**
+     * Carves a range of tiles, splits it in halves until a single tile is left
+     */
+    private class Tiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MazeGenerator maze;
+        private final int tilesY;
+        private final long[] seeds;
+        private final Difficulty difficulty;
+        private final MazeGenerator[] tiles;
+        private final int from, to;
+
+        Tiles(MazeGenerator maze, int tilesY, long[] seeds, Difficulty difficulty, MazeGenerator[] tiles,
+              int from, int to) {
+            this.maze = maze;
+            this.tilesY = tilesY;
+            this.seeds = seeds;
+            this.difficulty = difficulty;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tiles(maze, tilesY, seeds, difficulty, tiles, from, middle),
+                        new Tiles(maze, tilesY, seeds, difficulty, tiles, middle, to));
+                return;
+            }
+            tiles[from] = tile(maze, tilesY, seeds[from], difficulty, from);
+        }
+    }
+
+    /**
+     * Carves tile t into a generator of its own
+     */
+    private MazeGenerator tile(MazeGenerator maze, int tilesY, long seed, Difficulty difficulty, int t) {
+        int x = t / tilesY * tileSize, y = t % tilesY * tileSize;
+        MazeGenerator tile = new MazeGenerator(Math.min(tileSize, maze.width - x), Math.min(tileSize, maze.height - y), seed);
+        tile.Generate(difficulty, algorithm);
+        return tile;
+    }
+
+    /**
+     * Copies the removed walls of a tile into the maze, a row of the tile at a time
+     * @param x First cell x of the tile in the maze
+     * @param y First cell y of the tile in the maze
+     */
+    private static void copy(MazeGenerator tile, MazeGenerator maze, int x, int y) {
+        for (int a = 0; a < tile.width; a++) {
+            int from = a * tile.height, to = (x + a) * maze.height + y;
+            orBits(tile.horizontalWalls, from, maze.horizontalWalls, to, tile.height);
+            orBits(tile.verticalWalls, from, maze.verticalWalls, to, tile.height);
+        }
+    }
+
+    /**
+     * Sets bits to..to + length of dst that are set in from..from + length of src, up to 64 at a time
+     */
+    private static void orBits(long[] src, int from, long[] dst, int to, int length) {
+        while (length > 0) {
+            int n = Math.min(length, 64);
+            int shift = from & 63;
+            long bits = src[from >>> 6] >>> shift;
+            if (shift != 0 && shift + n > 64)
+                bits |= src[(from >>> 6) + 1] << (64 - shift);
+            if (n < 64)
+                bits &= (1L << n) - 1;
+
+            shift = to & 63;
+            dst[to >>> 6] |= bits << shift;
+            if (shift != 0 && shift + n > 64)
+                dst[(to >>> 6) + 1] |= bits >>> (64 - shift);
+            from += n;
+            to += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Randomized Kruskal's algorithm over the tiles: the borders between them are visited in random order
+     * and opened at a random cell if the tiles on both sides are not connected yet
+     */
+    private void stitch(MazeGenerator maze, Random random, int tilesX, int tilesY) {
+        int count = tilesX * tilesY;
+        // border t is the one towards x + 1 of tile t, border count + t the one towards y + 1
+        int[] borders = new int[2 * count];
+        int size = 0;
+        for (int t = 0; t < count; t++) {
+            if (t / tilesY < tilesX - 1)
+                borders[size++] = t;
+            if (t % tilesY < tilesY - 1)
+                borders[size++] = count + t;
+        }
+
+        UnionFind sets = new UnionFind(count);
+        int joined = 0;
+        for (int k = 0; k < size && joined < count - 1; k++) {
+            int r = k + random.nextInt(size - k);
+            int border = borders[r];
+            borders[r] = borders[k];
+            borders[k] = border;
+
+            int t = border < count ? border : border - count;
+            int x = t / tilesY * tileSize, y = t % tilesY * tileSize;
+            if (border < count) {
+                if (!sets.union(t, t + tilesY))
+                    continue;
+                // between the last cells of the tile along x and the first ones of the next tile
+                int c = (x + tileSize - 1) * maze.height + y + random.nextInt(Math.min(tileSize, maze.height - y));
+                maze.RemoveWall(c, c + maze.height);
+            } else {
+                if (!sets.union(t, t + 1))
+                    continue;
+                int c = (x + random.nextInt(Math.min(tileSize, maze.width - x))) * maze.height + y + tileSize - 1;
+                maze.RemoveWall(c, c + 1);
+            }
+            joined++;
+        }
+    }
+}
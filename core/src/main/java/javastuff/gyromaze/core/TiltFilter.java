@@ -0,0 +1,121 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Estimates which way gravity points from accelerometer and gyroscope samples.
+ * The accelerometer alone is noisy and shaky hands move the ball, so its samples are smoothed.
+ * With a gyroscope the estimate is turned by the measured rotation and only slowly pulled
+ * towards the accelerometer (complementary filter), which follows quick tilts without the noise.
+ *
+ * Samples are fed one by one in the order they were measured.
+ * Everything fed between two calls of average() is integrated, not just the last sample.
+ */
+public class TiltFilter {
+    /**
+     * Longer gaps between samples (a pause, a dropped batch) restart the estimate from the accelerometer
+     */
+    private static final double MAX_GAP = 0.2;
+
+    /**
+     * How long (in seconds) the estimate takes to follow the accelerometer without and with a gyroscope
+     */
+    private final double accelTimeConstant, gyroTimeConstant;
+    /**
+     * Estimated gravity in device coordinates (m/s^2)
+     */
+    private float gx, gy, gz;
+    private boolean started;
+    /**
+     * Gyroscope samples came, the estimate may rely on them
+     */
+    private boolean gyro;
+    /**
+     * Timestamps of the last samples in nanoseconds, the latest of both
+     */
+    private long accelTime, gyroTime, time;
+    /**
+     * Estimate integrated over time since the last average()
+     */
+    private double sumX, sumY, sumTime;
+
+    /**
+     * @param accelTimeConstant Smoothing of the accelerometer alone in seconds, 0 takes samples as they are
+     * @param gyroTimeConstant Smoothing of the accelerometer when a gyroscope turns the estimate, in seconds
+     */
+    public TiltFilter(double accelTimeConstant, double gyroTimeConstant) {
+        this.accelTimeConstant = accelTimeConstant;
+        this.gyroTimeConstant = gyroTimeConstant;
+    }
+
+    /**
+     * Takes an accelerometer sample
+     * @param x Acceleration along device axes (m/s^2)
+     * @param timestamp Time of the sample in nanoseconds
+     */
+    public void accelerometer(float x, float y, float z, long timestamp) {
+        double dt = (timestamp - accelTime) / 1e9;
+        accelTime = timestamp;
+        if (!started || dt <= 0 || dt > MAX_GAP) {
+            gx = x;
+            gy = y;
+            gz = z;
+            started = true;
+        } else {
+            double tau = gyro ? gyroTimeConstant : accelTimeConstant;
+            float k = (float) (dt / (tau + dt));
+            gx += (x - gx) * k;
+            gy += (y - gy) * k;
+            gz += (z - gz) * k;
+        }
+        advance(timestamp);
+    }
+
+    /**
+     * Takes a gyroscope sample and turns the estimate by it
+     * @param x Angular speed around device axes (rad/s)
+     * @param timestamp Time of the sample in nanoseconds
+     */
+    public void gyroscope(float x, float y, float z, long timestamp) {
+        double dt = (timestamp - gyroTime) / 1e9;
+        gyroTime = timestamp;
+        gyro = true;
+        if (!started || dt <= 0 || dt > MAX_GAP)
+            return;
+        // gravity stands still while the device turns, in device coordinates it turns the other way: dg/dt = g x w
+        float d = (float) dt;
+        float nx = gx + (gy * z - gz * y) * d;
+        float ny = gy + (gz * x - gx * z) * d;
+        float nz = gz + (gx * y - gy * x) * d;
+        gx = nx;
+        gy = ny;
+        gz = nz;
+        advance(timestamp);
+    }
+
+    /**
+     * Adds the new estimate to the running integral, weighted by the time since the previous sample
+     */
+    private void advance(long timestamp) {
+        if (time != 0 && timestamp > time) {
+            double dt = Math.min((timestamp - time) / 1e9, MAX_GAP);
+            sumX += gx * dt;
+            sumY += gy * dt;
+            sumTime += dt;
+        }
+        time = Math.max(time, timestamp);
+    }
+
+    /**
+     * Gives the estimate averaged over the samples taken since the previous call
+     * @param out Receives X and Y of gravity, unchanged if there was no sample yet
+     */
+    public void average(Vector out) {
+        if (sumTime > 0) {
+            out.x = (float) (sumX / sumTime);
+            out.y = (float) (sumY / sumTime);
+        } else if (started) {
+            out.x = gx;
+            out.y = gy;
+        }
+        sumX = sumY = sumTime = 0;
+    }
+}
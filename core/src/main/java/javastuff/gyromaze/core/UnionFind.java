@@ -0,0 +1,50 @@
+package javastuff.gyromaze.core;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets of the numbers 0 to n - 1 in a single int array.
+ * A root holds minus the size of its set, any other number its parent.
+ * Union by size and path halving keep both operations close to constant time.
+ */
+final class UnionFind {
+    private final int[] parent;
+
+    UnionFind(int n) {
+        parent = new int[n];
+        Arrays.fill(parent, -1);
+    }
+
+    /**
+     * @return Representative of the set holding a
+     */
+    int find(int a) {
+        while (parent[a] >= 0) {
+            int p = parent[a];
+            // skip to the grandparent, halving the path for the next time
+            if (parent[p] >= 0)
+                parent[a] = parent[p];
+            a = parent[a];
+        }
+        return a;
+    }
+
+    /**
+     * Joins the sets holding a and b
+     * @return False if they were one set already
+     */
+    boolean union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return false;
+        if (parent[a] > parent[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        parent[a] += parent[b];
+        parent[b] = a;
+        return true;
+    }
+}
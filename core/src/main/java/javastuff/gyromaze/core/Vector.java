@@ -1,12 +1,12 @@
-package javastuff.gyromaze;
+package javastuff.gyromaze.core;
 
 /**
  * 2D vector
  */
-class Vector {
+public class Vector {
     public float x;
     public float y;
-    Vector(float x, float y)
+    public Vector(float x, float y)
     {
         this.x = x;
         this.y = y;
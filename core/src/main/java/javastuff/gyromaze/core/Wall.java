@@ -0,0 +1,26 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Wall obstacle.
+ * Forms Maze, a wall is a straight run of the walls of neighbouring cells merged into one rectangle
+ */
+public class Wall {
+    /**
+     * Wall attributes
+     */
+    public int x, y, width, height;
+
+    public Wall(int x, int y, int width, int height) {
+        set(x, y, width, height);
+    }
+
+    /**
+     * Turns this object into another wall, so one object can stand for any number of walls in turn
+     */
+    public void set(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+}
\ No newline at end of file
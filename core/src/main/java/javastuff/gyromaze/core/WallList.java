@@ -0,0 +1,41 @@
+package javastuff.gyromaze.core;
+
+import java.util.Arrays;
+
+/**
+ * Walls of a block of cells, merged by World.walls() into rectangles as long as the walls run.
+ * Wall objects are kept and refilled, so once the list has grown to the block size filling it allocates nothing.
+ */
+public class WallList {
+    private Wall[] walls = new Wall[16];
+    private int size;
+
+    /**
+     * @return Number of walls
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Wall k, valid until the list is filled again
+     */
+    public Wall get(int k) {
+        return walls[k];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return Wall object to fill as the next wall of the list
+     */
+    Wall add() {
+        if (size == walls.length)
+            walls = Arrays.copyOf(walls, size * 2);
+        if (walls[size] == null)
+            walls[size] = new Wall(0, 0, 0, 0);
+        return walls[size++];
+    }
+}
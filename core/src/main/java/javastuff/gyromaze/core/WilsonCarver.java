@@ -0,0 +1,61 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+
+/**
+ * Wilson's algorithm: a random walk from a cell outside the maze until it hits the maze,
+ * with loops erased, is added as a corridor. Gives every possible maze with the same chance.
+ * The first walks wander long, the rest are short, on average it takes time close to linear in the number of cells.
+ */
+final class WilsonCarver {
+    private WilsonCarver() {
+    }
+
+    static void carve(MazeGenerator maze, Random random) {
+        int width = maze.width, height = maze.height, count = width * height;
+        // direction each cell of the current walk was left by, the last exit wins so loops are erased
+        byte[] exit = new byte[count];
+        int[] adj = new int[4];
+
+        maze.visit(random.nextInt(count));
+        for (int start = 0; start < count; start++) {
+            if (maze.visited(start))
+                continue;
+            // walk until the maze is hit
+            int c = start;
+            while (!maze.visited(c)) {
+                int size = neighbours(c, width, height, adj);
+                int k = random.nextInt(size);
+                exit[c] = (byte) k;
+                c = adj[k];
+            }
+            // add the loop-erased walk
+            c = start;
+            while (!maze.visited(c)) {
+                neighbours(c, width, height, adj);
+                int n = adj[exit[c]];
+                maze.visit(c);
+                maze.RemoveWall(c, n);
+                c = n;
+            }
+        }
+    }
+
+    /**
+     * Fills adj with all neighbours of a cell, in order left, right, up, down
+     * @return Number of neighbours
+     */
+    static int neighbours(int c, int width, int height, int[] adj) {
+        int x = c / height, y = c - x * height;
+        int size = 0;
+        if (x > 0)
+            adj[size++] = c - height;
+        if (x < width - 1)
+            adj[size++] = c + height;
+        if (y > 0)
+            adj[size++] = c - 1;
+        if (y < height - 1)
+            adj[size++] = c + 1;
+        return size;
+    }
+}
@@ -0,0 +1,777 @@
+package javastuff.gyromaze.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Game world.
+ * Holds the current level and the ball, advances the ball by physics steps and resolves collisions.
+ * Walls, holes and coins are not kept as objects, they are placed from the level for the cells that are needed,
+ * so the memory taken does not grow with the number of objects in the maze and the world may be larger than the screen.
+ * Knows nothing about Android, so it can run, be tested and benchmarked on a plain JVM.
+ */
+public class World {
+    public enum Side {top, bottom, right, left}
+
+    /**
+     * Outcome of a step
+     */
+    public enum Result {
+        /**
+         * Nothing special happened
+         */
+        playing,
+        /**
+         * Last coin was collected, level should be rebuilt
+         */
+        cleared,
+        /**
+         * Ball fell into a hole, game's over
+         */
+        fallen
+    }
+
+    /**
+     * Number of cells
+     */
+    public final int cellsX, cellsY;
+    /**
+     * Size of the world in pixels
+     */
+    public final int width, height;
+    /**
+     * Game info deduced from the view size
+     */
+    public final int horizontalWallHWidth,verticalWallHeight,wallSize,cellSize;
+    /**
+     * Distance between neighbouring columns/rows of cells
+     */
+    public final int columnPitch, rowPitch;
+    public final float circleDiameter;
+    /**
+     * Longest move of the ball between two collision checks, shorter moves can not jump over a wall, coin or hole
+     */
+    private final float maxTravel;
+    /**
+     * Difficulty multipliers
+     */
+    public final float holeSize,holeChance;
+    public final int scoreMultiplier;
+    private final Difficulty difficulty;
+    /**
+     * Gives seeds of the levels, the whole game is given by the seed of the world
+     */
+    private final Random seeds;
+    /**
+     * Stored levels, none by default
+     */
+    private volatile LevelCache levelCache;
+    /**
+     * THE ball
+     */
+    public Ball ball;
+    /**
+     * Current level, replaced as a whole so a reader on another thread never sees a half built one.
+     * Collected coins are cleared from it.
+     */
+    public volatile Grid level;
+    /**
+     * Walls around the ball and of the whole maze the collisions are checked against, refilled for every check
+     */
+    private final WallList nearbyWalls = new WallList(), allWalls = new WallList();
+    /**
+     * Coin and hole the collisions are checked against, reused for every one of them
+     */
+    private final Coin coin = new Coin(0, 0, 0);
+    private final Hole hole = new Hole(0, 0, 0);
+    /**
+     * Area the ball is kept in
+     */
+    private volatile float boundsWidth, boundsHeight;
+    /**
+     * Area read at the start of the current step, a change from another thread takes effect from the next step
+     */
+    private float stepWidth, stepHeight;
+    /**
+     * Current score
+     */
+    public volatile int score = 0;
+    /**
+     * Number of coins left
+     */
+    public int coinCount = 0;
+    /**
+     * Measures the steps when set, nothing is measured by default
+     */
+    public volatile StepProfile profile;
+    /**
+     * Records the inputs of the steps when set, nothing is recorded by default
+     */
+    public volatile Recording recording;
+    /**
+     * Resolves wall collisions of a step against the whole maze, as before the check was limited to the cells around the ball.
+     * Off in the game, kept to compare steps and their cost with the full scan.
+     */
+    public boolean scanAllWalls;
+    /**
+     * Algorithm carving the mazes of the next levels
+     */
+    public volatile MazeAlgorithm algorithm = MazeAlgorithm.Backtracker;
+    /**
+     * Pool carving the tiles of levels of Level.TILED_CELLS and more, null carves them on the thread building the level
+     */
+    public volatile ForkJoinPool pool;
+
+    /**
+     * Computes layout of a world that fills the view, call initialize() to build the first level
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     * @param width Width of the world in pixels
+     * @param height Height of the world in pixels
+     * @param difficulty Difficulty settings
+     * @param seed Seed of the levels, same seed gives the same levels in the same order
+     */
+    public World(int cellsX, int cellsY, int width, int height, Difficulty difficulty, long seed) {
+        this(cellsX, cellsY, width, height, cellsX, cellsY, difficulty, seed);
+    }
+
+    /**
+     * Computes layout of a world of any size, call initialize() to build the first level.
+     * Cells are as large as if only visibleX x visibleY of them filled the view, the rest is reached by scrolling.
+     * @param cellsX Number of cell rows
+     * @param cellsY Number of cell columns
+     * @param viewWidth Width of the view in pixels
+     * @param viewHeight Height of the view in pixels
+     * @param visibleX Number of cell rows that fit in the view
+     * @param visibleY Number of cell columns that fit in the view
+     * @param difficulty Difficulty settings
+     * @param seed Seed of the levels, same seed gives the same levels in the same order
+     */
+    public World(int cellsX, int cellsY, int viewWidth, int viewHeight, int visibleX, int visibleY, Difficulty difficulty, long seed) {
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        this.difficulty = difficulty;
+        seeds = new Random(seed);
+
+        // needed minimum size for cell so the ball can fit in
+        cellSize = Math.min(viewWidth / (visibleY + 4), viewHeight / (visibleX + 2));
+
+        //possible width of vertical wall and height of horizontal wall
+        int verticalWallWidth = (viewWidth - visibleY * cellSize) / (visibleY - 1);
+        int horizontalWallHeight = (viewHeight - visibleX * cellSize) / (visibleX - 1);
+        // find min from them as unified "thickness" of the wall
+        wallSize = Math.min(verticalWallWidth, horizontalWallHeight);
+
+        // recompute height and width
+        verticalWallHeight = (viewHeight - (visibleX - 1)*wallSize)/visibleX;
+        horizontalWallHWidth = (viewWidth - (visibleY - 1)*wallSize)/visibleY;
+        columnPitch = horizontalWallHWidth + wallSize;
+        rowPitch = verticalWallHeight + wallSize;
+
+        // whole maze, never smaller than the view
+        width = Math.max(viewWidth, cellsY * columnPitch - wallSize);
+        height = Math.max(viewHeight, cellsX * rowPitch - wallSize);
+        boundsWidth = width;
+        boundsHeight = height;
+
+        circleDiameter = Math.min(viewHeight * 12 / (25 * (visibleX + 2)), viewWidth * 12 / (25 * (visibleY + 4))) / 2;
+        maxTravel = Math.max(1, Math.min(circleDiameter, wallSize) / 2f);
+
+        // set difficulty
+        holeSize = difficulty.holeSize;
+        holeChance = difficulty.holeChance;
+        scoreMultiplier = difficulty.scoreMultiplier;
+    }
+
+    /**
+     * Sets the area the ball is kept in, may be called from any thread
+     * @param width Width of the area
+     * @param height Height of the area
+     */
+    public void setBounds(float width, float height) {
+        boundsWidth = width;
+        boundsHeight = height;
+    }
+
+    /**
+     * Keeps levels on disk, so a level played before is not generated again
+     * @param cache Cache to use, null to always generate
+     */
+    public void setLevelCache(LevelCache cache)
+    {
+        levelCache = cache;
+    }
+
+    /**
+     * Generates the next level of the game, or opens it from the cache.
+     * Levels come in the order given by the seed of the world.
+     * @return New level
+     */
+    public Grid nextLevel()
+    {
+        long seed = seeds.nextLong();
+        LevelCache cache = levelCache;
+        MazeAlgorithm algorithm = this.algorithm;
+        ForkJoinPool pool = this.pool;
+        return cache != null ? cache.get(seed, difficulty, algorithm, cellsX, cellsY, pool)
+                : new Level(seed, difficulty, algorithm, cellsX, cellsY, pool);
+    }
+
+    /**
+     * Starts an endless level, the world must have ChunkedLevel.SIZE rows and columns
+     * @return New level, built chunk by chunk as the ball gets to it
+     */
+    public ChunkedLevel endlessLevel()
+    {
+        return new ChunkedLevel(seeds.nextLong(), difficulty, algorithm);
+    }
+
+    /**
+     * (Re)Initializes walls, holes and coins with the next level
+     */
+    public void initialize()
+    {
+        initialize(nextLevel());
+    }
+
+    /**
+     * Swaps in a level built earlier, takes constant time
+     * @param level Level of the size of this world
+     */
+    public void initialize(Grid level)
+    {
+        coinCount = level.coinCount();
+
+        // initialize ball
+        ball = new Ball((int)circleDiameter);
+
+        // publish the new level
+        this.level = level;
+    }
+
+    /**
+     * Places the walls of a block of cells, merged into as few rectangles as possible.
+     * Walls in a line between neighbouring cells become one rectangle that runs as far as they do inside the block,
+     * covering the corners between them, so there are no seams for the ball to catch on.
+     * A vertical wall covers the corners at both its ends, a horizontal one the corner at its right end,
+     * which together cover every corner a wall touches.
+     * Only reads the level, so it may be called from any thread with its own list to fill.
+     * @param level Level of the size of this world
+     * @param fromRow First cell row of the block
+     * @param toRow Last cell row of the block
+     * @param fromColumn First cell column of the block
+     * @param toColumn Last cell column of the block
+     * @param out List to fill, vertical walls first, then horizontal walls row by row
+     * @return out
+     */
+    public WallList walls(Grid level, int fromRow, int toRow, int fromColumn, int toColumn, WallList out)
+    {
+        out.clear();
+        fromRow = Math.max(fromRow, 0);
+        toRow = Math.min(toRow, cellsX - 1);
+        fromColumn = Math.max(fromColumn, 0);
+        toColumn = Math.min(toColumn, cellsY - 1);
+        // vertical walls, on the right of the cells of a column
+        for (int j = fromColumn; j <= Math.min(toColumn, cellsY - 2); j++) {
+            for (int i = fromRow; i <= toRow; i++) {
+                if (!level.hasVerticalWall(i, j))
+                    continue;
+                int first = i;
+                while (i < toRow && level.hasVerticalWall(i + 1, j))
+                    i++;
+                out.add().set(j * columnPitch + horizontalWallHWidth,
+                        first * rowPitch - wallSize,
+                        wallSize,
+                        (i - first + 1) * rowPitch + wallSize);
+            }
+        }
+        // horizontal walls, at the bottom of the cells of a row
+        for (int i = fromRow; i <= Math.min(toRow, cellsX - 2); i++) {
+            for (int j = fromColumn; j <= toColumn; j++) {
+                if (!level.hasHorizontalWall(i, j))
+                    continue;
+                int first = j;
+                while (j < toColumn && level.hasHorizontalWall(i, j + 1))
+                    j++;
+                out.add().set(first * columnPitch,
+                        i * rowPitch + verticalWallHeight,
+                        (j - first + 1) * columnPitch,
+                        wallSize);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Places a hole of a level, may be called from any thread with its own object to fill
+     * @param level Level of the size of this world
+     * @param i Cell row
+     * @param j Cell column
+     * @param out Object to fill
+     * @return out, or null if there is no hole in the cell
+     */
+    public Hole hole(Grid level, int i, int j, Hole out)
+    {
+        if (!level.hasHole(i, j))
+            return null;
+
+        out.diameter = circleDiameter*holeSize;
+        out.X = holeX(level, i, j);
+        out.Y = holeY(level, i, j);
+        return out;
+    }
+
+    private float holeX(Grid level, int i, int j) {
+        return j * columnPitch + horizontalWallHWidth/2f + level.holeX(i, j) * cellSize + 1 - cellSize/2;
+    }
+
+    private float holeY(Grid level, int i, int j) {
+        return i * rowPitch + verticalWallHeight/2f + level.holeY(i, j) * cellSize + 1 - cellSize/2;
+    }
+
+    /**
+     * Tells whether the ball can cross a cell coming in by one side and going out by another without falling in
+     * (see exits()). Only reads the level, so it may be called from any thread.
+     * @param level Level of the size of this world
+     * @param i Cell row
+     * @param j Cell column
+     * @param from Side the ball comes in by, null if it starts in the cell
+     * @param to Side the ball goes out by
+     * @return True if the ball can get through
+     */
+    public boolean passes(Grid level, int i, int j, Side from, Side to)
+    {
+        return (exits(level, i, j, from) & 1 << to.ordinal()) != 0;
+    }
+
+    /**
+     * Tells by which sides the ball can go out of a cell after coming in by one side, without falling in.
+     * The ball's center keeps to the inside of the cell narrowed by its radius and to the openings of the sides
+     * without a wall, up to the next cells. The way to a side is closed when the reaches of overlapping holes
+     * of the cell and of its neighbours join the edge of that area on one side of the way to the edge on the other.
+     * Only reads the level, so it may be called from any thread.
+     * @param level Level of the size of this world
+     * @param i Cell row
+     * @param j Cell column
+     * @param from Side the ball comes in by, null if it starts in the cell, then only the openings are checked
+     * @return Bit side.ordinal() set for every side the way to is not closed, walls are not checked
+     */
+    public int exits(Grid level, int i, int j, Side from)
+    {
+        // sides numbered clockwise from the top, bit k set if side k is open to the next cell
+        int in = from == null ? -1 : clockwise(from);
+        int open = in < 0 ? 0 : 1 << in;
+        if (i > 0 && !level.hasHorizontalWall(i - 1, j))
+            open |= 1;
+        if (j < cellsY - 1 && !level.hasVerticalWall(i, j))
+            open |= 2;
+        if (i < cellsX - 1 && !level.hasHorizontalWall(i, j))
+            open |= 4;
+        if (j > 0 && !level.hasVerticalWall(i, j - 1))
+            open |= 8;
+
+        // the ball's center stays in [x0, x1] x [y0, y1] inside the cell, the last column and row reach on to the
+        // edge of the world, openings go this far on to where it is in the next cell
+        float radius = (int)circleDiameter, reach = circleDiameter*holeSize, opening = wallSize + 2 * radius;
+        float x0 = j * columnPitch + radius, x1 = (j == cellsY - 1 ? width : j * columnPitch + horizontalWallHWidth) - radius;
+        float y0 = i * rowPitch + radius, y1 = (i == cellsX - 1 ? height : i * rowPitch + verticalWallHeight) - radius;
+
+        // holes of the 3 x 3 cells around that reach into the cell or its openings, bit (a - i + 1) * 3 + b - j + 1
+        float left = x0 - ((open & 8) != 0 ? opening : 0) - reach, right = x1 + ((open & 2) != 0 ? opening : 0) + reach;
+        float top = y0 - ((open & 1) != 0 ? opening : 0) - reach, bottom = y1 + ((open & 4) != 0 ? opening : 0) + reach;
+        int holes = 0;
+        for (int k = 0; k < 9; k++) {
+            int a = i - 1 + k / 3, b = j - 1 + k % 3;
+            if (a < 0 || a >= cellsX || b < 0 || b >= cellsY || !level.hasHole(a, b))
+                continue;
+            float x = holeX(level, a, b), y = holeY(level, a, b);
+            boolean across = x > left && x < right && y > y0 - reach && y < y1 + reach;
+            boolean along = y > top && y < bottom && x > x0 - reach && x < x1 + reach;
+            if (across || along)
+                holes |= 1 << k;
+        }
+
+        int closed = 0;
+        while (holes != 0) {
+            // the next group of holes whose reaches overlap, and the pieces of the edge it touches
+            int next = Integer.numberOfTrailingZeros(holes), todo = 1 << next, touched = 0;
+            holes &= ~todo;
+            while (todo != 0) {
+                int k = Integer.numberOfTrailingZeros(todo);
+                todo &= todo - 1;
+                float x = holeX(level, i - 1 + k / 3, j - 1 + k % 3), y = holeY(level, i - 1 + k / 3, j - 1 + k % 3);
+                touched |= touches(x, y, reach, open, x0, y0, x1, y1, opening);
+                for (int m = 0; m < 9; m++) {
+                    if ((holes & 1 << m) == 0)
+                        continue;
+                    float dx = x - holeX(level, i - 1 + m / 3, j - 1 + m % 3), dy = y - holeY(level, i - 1 + m / 3, j - 1 + m % 3);
+                    if (dx * dx + dy * dy < 4 * reach * reach) {
+                        holes &= ~(1 << m);
+                        todo |= 1 << m;
+                    }
+                }
+            }
+            for (int out = 0; out < 4; out++) {
+                if ((touched & edge(out, in, open)) != 0 && (touched & edge(in, out, open)) != 0)
+                    closed |= 1 << out;
+            }
+        }
+
+        int exits = 0;
+        for (int s = 0; s < 4; s++) {
+            if ((closed & 1 << s) == 0)
+                exits |= 1 << CLOCKWISE[s].ordinal();
+        }
+        return exits;
+    }
+
+    /**
+     * Sides clockwise from the top
+     */
+    private static final Side[] CLOCKWISE = {Side.top, Side.right, Side.bottom, Side.left};
+
+    private static int clockwise(Side side) {
+        switch (side) {
+            case top: return 0;
+            case right: return 1;
+            case bottom: return 2;
+            default: return 3;
+        }
+    }
+
+    /**
+     * Pieces of the edge of the area the ball's center keeps to in a cell, three bits a side clockwise from the top:
+     * the edge of an open side's opening before, across and after its far end, or the first bit for a closed side
+     * @return Pieces going clockwise from the far end of the opening of side after to that of side before,
+     * only the edge of the one opening after or before the far end if the other is -1
+     */
+    private static int edge(int after, int before, int open) {
+        if (after < 0)
+            return 1 << 3 * before;
+        if (before < 0)
+            return 4 << 3 * after;
+        int edge = 4 << 3 * after | 1 << 3 * before;
+        for (int s = (after + 1) % 4; s != before; s = (s + 1) % 4)
+            edge |= ((open & 1 << s) != 0 ? 7 : 1) << 3 * s;
+        return edge;
+    }
+
+    /**
+     * @return Pieces of the edge of the area [x0, x1] x [y0, y1] and its openings (see edge()) closer to (x, y) than reach
+     */
+    private static int touches(float x, float y, float reach, int open, float x0, float y0, float x1, float y1, float opening) {
+        int touched = 0;
+        for (int s = 0; s < 4; s++) {
+            // side s runs clockwise from (px, py) to (qx, qy), its opening goes out by (nx, ny)
+            float px = s == 1 || s == 2 ? x1 : x0, py = s >= 2 ? y1 : y0;
+            float qx = s <= 1 ? x1 : x0, qy = s == 1 || s == 2 ? y1 : y0;
+            float nx = s == 1 ? opening : s == 3 ? -opening : 0, ny = s == 2 ? opening : s == 0 ? -opening : 0;
+            if ((open & 1 << s) == 0) {
+                if (near(x, y, px, py, qx, qy, reach))
+                    touched |= 1 << 3 * s;
+                continue;
+            }
+            if (near(x, y, px, py, px + nx, py + ny, reach))
+                touched |= 1 << 3 * s;
+            if (near(x, y, px + nx, py + ny, qx + nx, qy + ny, reach))
+                touched |= 2 << 3 * s;
+            if (near(x, y, qx + nx, qy + ny, qx, qy, reach))
+                touched |= 4 << 3 * s;
+        }
+        return touched;
+    }
+
+    /**
+     * @return True if point (x, y) is closer than distance to the line from (x0, y0) to (x1, y1)
+     */
+    private static boolean near(float x, float y, float x0, float y0, float x1, float y1, float distance) {
+        float lx = x1 - x0, ly = y1 - y0, length = lx * lx + ly * ly;
+        float t = length == 0 ? 0 : clamp(((x - x0) * lx + (y - y0) * ly) / length, 0, 1);
+        float dx = x - (x0 + t * lx), dy = y - (y0 + t * ly);
+        return dx * dx + dy * dy < distance * distance;
+    }
+
+    /**
+     * Places a coin of a level, may be called from any thread with its own object to fill
+     * @param level Level of the size of this world
+     * @param i Cell row
+     * @param j Cell column
+     * @param out Object to fill
+     * @return out, or null if there is no coin in the cell (anymore)
+     */
+    public Coin coin(Grid level, int i, int j, Coin out)
+    {
+        if (!level.hasCoin(i, j))
+            return null;
+
+        float dispX = level.coinX(i, j) * cellSize / 5 + 1 - cellSize / 10;
+        float dispY = level.coinY(i, j) * cellSize / 5 + 1 - cellSize / 10;
+
+        out.diameter = (int)circleDiameter;
+        out.X = j * columnPitch + horizontalWallHWidth / 2f + dispX;
+        out.Y = i * rowPitch + verticalWallHeight / 2f + dispY;
+        return out;
+    }
+
+    /**
+     * @param y Position in the world
+     * @return Row of the cell at the position, clamped to the maze
+     */
+    public int row(float y)
+    {
+        return (int) clamp(y / rowPitch, 0, cellsX - 1);
+    }
+
+    /**
+     * @param x Position in the world
+     * @return Column of the cell at the position, clamped to the maze
+     */
+    public int column(float x)
+    {
+        return (int) clamp(x / columnPitch, 0, cellsY - 1);
+    }
+
+    public static float clamp(float val, float min, float max) {
+        return Math.max(min, Math.min(max, val));
+    }
+
+    /**
+     * Returns side with which we collided.
+     * The side is the one the ball's old position was farthest outside of: moving in, the ball crosses that side last.
+     * Where two walls meet, the ball touching the corner of one while it rolls along the other is therefore kept
+     * on the side it rolls along, merged walls leave no other joins to catch on.
+     * @param w Wall that we intersected with
+     * @return Side of intersection
+     */
+    private Side getCollisionSide(Wall w)
+    {
+        float px = ball.oldX, py = ball.oldY;
+        // wall edges
+        float left = w.x, right = w.x + w.width, top = w.y, bottom = w.y + w.height;
+        // how far outside the wall the ball was along each axis
+        float outX = Math.max(left - px, px - right), outY = Math.max(top - py, py - bottom);
+        if (outX > 0 || outY > 0) {
+            if (outY >= outX)
+                return py < top ? Side.top : Side.bottom;
+            return px < left ? Side.left : Side.right;
+        }
+        // was already inside, leave by the closest side
+        float min = px - left;
+        Side closest = Side.left;
+        if (right - px < min) {
+            min = right - px;
+            closest = Side.right;
+        }
+        if (py - top < min) {
+            min = py - top;
+            closest = Side.top;
+        }
+        if (bottom - py < min)
+            closest = Side.bottom;
+        return closest;
+    }
+
+    /**
+     * Checks whether the ball intersects with a wall
+     * @param w Wall to check
+     * @return True if they intersect, false otherwise
+     */
+    private boolean intersects(Wall w)
+    {
+        // distance from the circle to the closest point of the wall
+        double dx = ball.X - clamp(ball.X, w.x, w.x + w.width);
+        double dy = ball.Y - clamp(ball.Y, w.y, w.y + w.height);
+
+        // check if the distance is smaller than ball's radius
+        return dx * dx + dy * dy < (double) ball.diameter * ball.diameter;
+    }
+
+    /**
+     * Resolves ball collision with specific wall
+     * @param w Wall to resolve
+     */
+    private void wallCollision(Wall w)
+    {
+        // check for collision
+        if (intersects(w)) {
+            // there is a collision, find out from what side
+            Side s = getCollisionSide(w);
+            // update ball accordingly
+            switch (s) {
+                case top:
+                    ball.Y = w.y - ball.diameter - 1;
+                    ball.velY = 0;
+                    break;
+                case bottom:
+                    ball.Y = w.y + w.height + ball.diameter + 1;
+                    ball.velY = 0;
+                    break;
+                case left:
+                    ball.X = w.x - ball.diameter - 1;
+                    ball.velX = 0;
+                    break;
+                case right:
+                    ball.X = w.x + w.width + ball.diameter + 1;
+                    ball.velX = 0;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return Row of the cell the ball is in (rows go along Y)
+     */
+    private int ballRow()
+    {
+        return row(ball.Y);
+    }
+
+    /**
+     * @return Column of the cell the ball is in (columns go along X)
+     */
+    private int ballColumn()
+    {
+        return column(ball.X);
+    }
+
+    /**
+     * Resolves collisions with walls in the ball's cell and the 8 cells around it.
+     * Ball is smaller than a cell, so no other wall can be touched and the cost does not grow with maze size.
+     * Walls are merged within the 3 x 3 cells, where a run is cut off the ball is more than a cell away from its end.
+     */
+    public void nearbyWallCollisions()
+    {
+        int row = ballRow(), col = ballColumn();
+        walls(level, row - 1, row + 1, col - 1, col + 1, nearbyWalls);
+        for (int k = 0; k < nearbyWalls.size(); k++)
+            wallCollision(nearbyWalls.get(k));
+    }
+
+    /**
+     * Resolves collisions with every wall of the maze.
+     * Full scan that nearbyWallCollisions() replaces, kept as a reference to compare results and speed against.
+     */
+    public void allWallCollisions()
+    {
+        walls(level, 0, cellsX - 1, 0, cellsY - 1, allWalls);
+        for (int k = 0; k < allWalls.size(); k++)
+            wallCollision(allWalls.get(k));
+    }
+
+    /**
+     * Updates ball and resolves collisions.
+     * A move longer than maxTravel is swept: the ball goes along its path in equal parts and collisions are resolved after each,
+     * so the first thing hit stops it even at high speed or after a long step.
+     * @param sensorX X value from accelerometer
+     * @param sensorY Y value from accelerometer
+     * @param delta Time delta
+     * @return What happened during the step
+     */
+    public Result step(float sensorX, float sensorY, double delta) {
+        stepWidth = boundsWidth;
+        stepHeight = boundsHeight;
+        Recording rec = recording;
+        if (rec != null)
+            rec.step(sensorX, sensorY, delta, stepWidth, stepHeight);
+        StepProfile p = profile;
+        if (p == null)
+            return move(sensorX, sensorY, delta, null);
+        long start = System.nanoTime();
+        Result r = move(sensorX, sensorY, delta, p);
+        p.end(System.nanoTime() - start);
+        return r;
+    }
+
+    /**
+     * Moves the ball, sweeping long moves
+     * @param p Profile to add the times of the parts to, or null
+     */
+    private Result move(float sensorX, float sensorY, double delta, StepProfile p) {
+        long t = p != null ? System.nanoTime() : 0;
+        // update ball
+        ball.reposition(sensorX, sensorY, delta);
+        if (p != null)
+            p.lap(StepProfile.Phase.reposition, t);
+
+        float moveX = ball.X - ball.oldX, moveY = ball.Y - ball.oldY;
+        int parts = (int) Math.ceil(Math.sqrt(moveX * moveX + moveY * moveY) / maxTravel);
+        // short move, checking the end is enough
+        if (parts <= 1)
+            return collisions(p);
+
+        moveX /= parts;
+        moveY /= parts;
+        ball.X = ball.oldX;
+        ball.Y = ball.oldY;
+        for (int k = 0; k < parts; k++) {
+            ball.oldX = ball.X;
+            ball.oldY = ball.Y;
+            ball.X += moveX;
+            ball.Y += moveY;
+            Result r = collisions(p);
+            if (r != Result.playing)
+                return r;
+            // stopped by a wall, do not move further in that direction
+            if (ball.velX == 0)
+                moveX = 0;
+            if (ball.velY == 0)
+                moveY = 0;
+        }
+        return Result.playing;
+    }
+
+    /**
+     * Resolves collisions of the ball at its current position
+     * @param p Profile to add the times of the parts to, or null
+     * @return What happened
+     */
+    private Result collisions(StepProfile p) {
+        long t = p != null ? System.nanoTime() : 0;
+        // check collisions with walls around the ball
+        if (scanAllWalls)
+            allWallCollisions();
+        else
+            nearbyWallCollisions();
+        if (p != null)
+            t = p.lap(StepProfile.Phase.walls, t);
+        // coins and holes are kept by cell and never reach further than the next cell,
+        // only the ball's cell and the 8 around it need to be checked
+        int row = ballRow(), col = ballColumn();
+        int fromRow = Math.max(row - 1, 0), toRow = Math.min(row + 1, cellsX - 1);
+        int fromCol = Math.max(col - 1, 0), toCol = Math.min(col + 1, cellsY - 1);
+        // coins
+        Grid level = this.level;
+        for (int i = fromRow; i <= toRow; i++) {
+            for (int j = fromCol; j <= toCol; j++) {
+                Coin c = coin(level, i, j, coin);
+                if (c != null && c.collides(ball)) {
+                    // coin is there and collides with ball, remove it and increase score/decrease coin count
+                    level.collectCoin(i, j);
+                    score+=scoreMultiplier;
+                    coinCount--;
+                    if (coinCount == 0)
+                        return Result.cleared;
+                }
+            }
+        }
+        if (p != null)
+            t = p.lap(StepProfile.Phase.coins, t);
+        // holes
+        for (int i = fromRow; i <= toRow; i++) {
+            for (int j = fromCol; j <= toCol; j++) {
+                Hole h = hole(level, i, j, hole);
+                if (h != null && h.collides(ball)) {
+                    // collided with ball, game's over
+                    return Result.fallen;
+                }
+            }
+        }
+        if (p != null)
+            t = p.lap(StepProfile.Phase.holes, t);
+        // resolve boundary collisions
+        ball.boundaryCollisions(stepWidth, stepHeight);
+        if (p != null)
+            p.lap(StepProfile.Phase.boundary, t);
+        return Result.playing;
+    }
+}
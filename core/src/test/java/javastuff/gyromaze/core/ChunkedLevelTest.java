@@ -0,0 +1,29 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Chunks of the endless level come and go, what the ball did in them must stay
+ */
+public class ChunkedLevelTest {
+    @Test
+    public void collectedCoinStaysCollectedWhenItsChunkIsBuiltAgain() {
+        ChunkedLevel level = new ChunkedLevel(11, Difficulty.Medium, MazeAlgorithm.Backtracker);
+        int i = 0, j = 0;
+        while (!level.hasCoin(i, j))
+            j++;
+        level.collectCoin(i, j);
+        assertFalse(level.hasCoin(i, j));
+
+        // looking at chunks that share its slot drops the chunk
+        for (int row = 1; row < 4; row++)
+            level.hasCoin(row * ChunkedLevel.SLOTS * ChunkedLevel.CHUNK, j);
+        assertFalse("collected coin came back", level.hasCoin(i, j));
+
+        // the same level from the seed still has the coin
+        assertTrue(new ChunkedLevel(11, Difficulty.Medium, MazeAlgorithm.Backtracker).hasCoin(i, j));
+    }
+}
@@ -0,0 +1,106 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Levels stored on disk must be the levels the generator builds for the same settings
+ */
+public class LevelCacheTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that two levels have the same walls, holes and coins in every cell
+     */
+    static void assertSameLevel(String what, Grid expected, Grid actual) {
+        assertEquals(what + " rows", expected.rows(), actual.rows());
+        assertEquals(what + " columns", expected.columns(), actual.columns());
+        assertEquals(what + " coins", expected.coinCount(), actual.coinCount());
+        for (int i = 0; i < expected.rows(); i++) {
+            for (int j = 0; j < expected.columns(); j++) {
+                String at = what + " cell " + i + "," + j;
+                assertEquals(at, expected.hasVerticalWall(i, j), actual.hasVerticalWall(i, j));
+                assertEquals(at, expected.hasHorizontalWall(i, j), actual.hasHorizontalWall(i, j));
+                assertEquals(at, expected.hasHole(i, j), actual.hasHole(i, j));
+                if (expected.hasHole(i, j)) {
+                    assertEquals(at, expected.holeX(i, j), actual.holeX(i, j), 0);
+                    assertEquals(at, expected.holeY(i, j), actual.holeY(i, j), 0);
+                }
+                assertEquals(at, expected.hasCoin(i, j), actual.hasCoin(i, j));
+                if (expected.hasCoin(i, j)) {
+                    assertEquals(at, expected.coinX(i, j), actual.coinX(i, j), 0);
+                    assertEquals(at, expected.coinY(i, j), actual.coinY(i, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void storedLevelIsTheGeneratedLevel() {
+        LevelCache cache = new LevelCache(folder.getRoot());
+        for (MazeAlgorithm algorithm : MazeAlgorithm.values()) {
+            Level generated = new Level(7, Difficulty.Hard, algorithm, 300, 256);
+
+            Grid stored = cache.get(7, Difficulty.Hard, algorithm, 300, 256);
+            assertTrue(stored instanceof StoredLevel);
+            assertSameLevel(algorithm + " stored", generated, stored);
+            assertTrue(new File(folder.getRoot(), "7-Hard-" + algorithm + "-300x256.lvl").isFile());
+
+            // opened from the file this time
+            assertSameLevel(algorithm + " opened", generated, cache.get(7, Difficulty.Hard, algorithm, 300, 256));
+        }
+    }
+
+    @Test
+    public void collectedCoinsAreNotStored() {
+        LevelCache cache = new LevelCache(folder.getRoot());
+        Grid level = cache.get(3, Difficulty.Easy, MazeAlgorithm.Backtracker, 256, 256);
+        int i = 0, j = 0;
+        while (!level.hasCoin(i, j))
+            j++;
+        level.collectCoin(i, j);
+        assertTrue(cache.get(3, Difficulty.Easy, MazeAlgorithm.Backtracker, 256, 256).hasCoin(i, j));
+    }
+
+    @Test
+    public void smallLevelsAreGenerated() {
+        LevelCache cache = new LevelCache(folder.getRoot());
+        assertTrue(cache.get(7, Difficulty.Hard, MazeAlgorithm.Backtracker, 10, 8) instanceof Level);
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void damagedFileIsBuiltAgain() throws IOException {
+        LevelCache cache = new LevelCache(folder.getRoot());
+        FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "5-Medium-Backtracker-256x300.lvl"));
+        try {
+            out.write(new byte[100]);
+        } finally {
+            out.close();
+        }
+        assertSameLevel("rebuilt", new Level(5, Difficulty.Medium, 256, 300),
+                cache.get(5, Difficulty.Medium, MazeAlgorithm.Backtracker, 256, 300));
+    }
+
+    @Test
+    public void onlyStaleTemporaryFilesAreDeleted() throws IOException {
+        LevelCache cache = new LevelCache(folder.getRoot());
+        File stale = folder.newFile("1-Easy-Backtracker-256x256.lvl.12.tmp");
+        File written = folder.newFile("1-Easy-Backtracker-256x256.lvl.13.tmp");
+        assertTrue(stale.setLastModified(System.currentTimeMillis() - LevelCache.STALE_TMP_MILLIS - 1000));
+        cache.get(2, Difficulty.Easy, MazeAlgorithm.Backtracker, 256, 256);
+        assertFalse(stale.exists());
+        // another thread may still be writing this one
+        assertTrue(written.exists());
+    }
+}
@@ -0,0 +1,151 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Every algorithm must carve a perfect maze: each cell reachable from every other by exactly one route
+ */
+public class MazeGeneratorTest {
+    /**
+     * Checks that a maze has n - 1 openings that join all cells into one set, so it has no loops,
+     * and that nothing is opened through its outer walls
+     */
+    static void assertPerfect(String what, MazeGenerator maze) {
+        int width = maze.width, height = maze.height, count = width * height;
+        UnionFind sets = new UnionFind(count);
+        int openings = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int c = x * height + y;
+                if (maze.IsHorizontalWallRemoved(x, y)) {
+                    assertTrue(what + " opened at the far x border", x < width - 1);
+                    // an opening between cells already joined would close a loop
+                    assertTrue(what + " has a loop", sets.union(c, c + height));
+                    openings++;
+                }
+                if (maze.IsVerticalWallRemoved(x, y)) {
+                    assertTrue(what + " opened at the far y border", y < height - 1);
+                    assertTrue(what + " has a loop", sets.union(c, c + 1));
+                    openings++;
+                }
+            }
+        }
+        assertEquals(what + " openings", count - 1, openings);
+        int root = sets.find(0);
+        for (int c = 1; c < count; c++)
+            assertEquals(what + " cell " + c + " not reachable", root, sets.find(c));
+        // no bits set beyond the last cell
+        for (long[] bits : new long[][]{maze.horizontalWalls, maze.verticalWalls}) {
+            int removed = 0;
+            for (long word : bits)
+                removed += Long.bitCount(word);
+            assertFalse(what + " opened outside the maze", removed > openings);
+        }
+    }
+
+    @Test
+    public void everyAlgorithmCarvesAPerfectMaze() {
+        for (MazeAlgorithm algorithm : MazeAlgorithm.values())
+            for (Difficulty difficulty : Difficulty.values())
+                for (int seed = 0; seed < 40; seed++) {
+                    int width = 1 + seed % 23, height = 1 + seed * 7 % 19;
+                    MazeGenerator maze = new MazeGenerator(width, height, seed);
+                    maze.Generate(difficulty, algorithm);
+                    assertPerfect(algorithm + " " + difficulty + " " + width + "x" + height + " seed " + seed, maze);
+                }
+    }
+
+    @Test
+    public void gameSizedMazeIsPerfect() {
+        MazeGenerator maze = new MazeGenerator(10, 8, 42);
+        maze.Generate(Difficulty.Medium);
+        assertPerfect("10x8 seed 42", maze);
+    }
+
+    /**
+     * @return Share of the cells with a single opening
+     */
+    private static double deadEnds(MazeGenerator maze) {
+        int dead = 0;
+        for (int x = 0; x < maze.width; x++) {
+            for (int y = 0; y < maze.height; y++) {
+                int openings = 0;
+                if (maze.IsHorizontalWallRemoved(x, y))
+                    openings++;
+                if (x > 0 && maze.IsHorizontalWallRemoved(x - 1, y))
+                    openings++;
+                if (maze.IsVerticalWallRemoved(x, y))
+                    openings++;
+                if (y > 0 && maze.IsVerticalWallRemoved(x, y - 1))
+                    openings++;
+                if (openings == 1)
+                    dead++;
+            }
+        }
+        return (double) dead / (maze.width * maze.height);
+    }
+
+    @Test
+    public void growingTreeKeepsCarvingFromTheNewestCell() {
+        // carving from the newest cell most of the time makes long corridors with few dead ends,
+        // Prim-like random picks make many
+        double easy = 0, hard = 0;
+        for (int seed = 0; seed < 20; seed++) {
+            MazeGenerator maze = new MazeGenerator(60, 60, seed);
+            maze.Generate(Difficulty.Easy, MazeAlgorithm.GrowingTree);
+            easy += deadEnds(maze) / 20;
+            maze = new MazeGenerator(60, 60, seed);
+            maze.Generate(Difficulty.Hard, MazeAlgorithm.GrowingTree);
+            hard += deadEnds(maze) / 20;
+        }
+        assertTrue("easy dead ends " + easy, easy < 0.14);
+        assertTrue("hard dead ends " + hard, hard > easy);
+    }
+
+    @Test
+    public void sameSeedGivesSameMaze() {
+        for (MazeAlgorithm algorithm : MazeAlgorithm.values()) {
+            MazeGenerator a = new MazeGenerator(30, 20, 7), b = new MazeGenerator(30, 20, 7);
+            a.Generate(Difficulty.Hard, algorithm);
+            b.Generate(Difficulty.Hard, algorithm);
+            assertArrayEquals(algorithm.toString(), a.horizontalWalls, b.horizontalWalls);
+            assertArrayEquals(algorithm.toString(), a.verticalWalls, b.verticalWalls);
+        }
+    }
+
+    /**
+     * @return Hash of the removed walls, cell by cell along y then x
+     */
+    private static long wallHash(MazeGenerator maze) {
+        long hash = 17;
+        for (int x = 0; x < maze.width; x++)
+            for (int y = 0; y < maze.height; y++)
+                hash = hash * 31 + (maze.IsHorizontalWallRemoved(x, y) ? 2 : 0) + (maze.IsVerticalWallRemoved(x, y) ? 1 : 0);
+        return hash;
+    }
+
+    @Test
+    public void backtrackerCarvesTheMazesOfTheOriginalGenerator() {
+        // hashes taken from the first MazeGenerator, which kept a boolean grid and a stack of cells,
+        // given a Random with the same seed
+        int[][] sizes = {{10, 8, 42}, {23, 17, 1}, {60, 45, 2024}};
+        long[][] expected = {
+                {5679173061174560145L, -3202010200547751850L, 3929284092391983975L},
+                {5771828755358309112L, -6894881020988166190L, -7731448895098186451L},
+                {1474184811407005692L, 5301345324528922605L, 5241199312555376684L}};
+        for (int i = 0; i < sizes.length; i++) {
+            for (Difficulty difficulty : Difficulty.values()) {
+                int width = sizes[i][0], height = sizes[i][1], seed = sizes[i][2];
+                MazeGenerator maze = new MazeGenerator(width, height, seed);
+                maze.Generate(difficulty);
+                assertEquals(difficulty + " " + width + "x" + height + " seed " + seed,
+                        expected[i][difficulty.ordinal()], wallHash(maze));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package javastuff.gyromaze.core;
+
+/**
+ * Level built by hand for tests: no walls, holes or coins until they are put in
+ */
+class OpenGrid implements Grid {
+    private final int rows, columns;
+    private final boolean[] vertical, horizontal, holes, coins;
+    private int coinCount;
+
+    OpenGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        vertical = new boolean[rows * columns];
+        horizontal = new boolean[rows * columns];
+        holes = new boolean[rows * columns];
+        coins = new boolean[rows * columns];
+    }
+
+    /**
+     * Puts a wall between cells (i, j) and (i, j + 1)
+     */
+    OpenGrid verticalWall(int i, int j) {
+        vertical[i * columns + j] = true;
+        return this;
+    }
+
+    /**
+     * Puts a wall between cells (i, j) and (i + 1, j)
+     */
+    OpenGrid horizontalWall(int i, int j) {
+        horizontal[i * columns + j] = true;
+        return this;
+    }
+
+    /**
+     * Puts a hole in the middle of cell (i, j)
+     */
+    OpenGrid hole(int i, int j) {
+        holes[i * columns + j] = true;
+        return this;
+    }
+
+    /**
+     * Puts a coin in the middle of cell (i, j)
+     */
+    OpenGrid coin(int i, int j) {
+        coins[i * columns + j] = true;
+        coinCount++;
+        return this;
+    }
+
+    private boolean inside(int i, int j) {
+        return i >= 0 && i < rows && j >= 0 && j < columns;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    @Override
+    public boolean hasVerticalWall(int i, int j) {
+        return inside(i, j) && j < columns - 1 && vertical[i * columns + j];
+    }
+
+    @Override
+    public boolean hasHorizontalWall(int i, int j) {
+        return inside(i, j) && i < rows - 1 && horizontal[i * columns + j];
+    }
+
+    @Override
+    public boolean hasHole(int i, int j) {
+        return holes[i * columns + j];
+    }
+
+    @Override
+    public float holeX(int i, int j) {
+        return 0.5f;
+    }
+
+    @Override
+    public float holeY(int i, int j) {
+        return 0.5f;
+    }
+
+    @Override
+    public boolean hasCoin(int i, int j) {
+        return coins[i * columns + j];
+    }
+
+    @Override
+    public float coinX(int i, int j) {
+        return 0.5f;
+    }
+
+    @Override
+    public float coinY(int i, int j) {
+        return 0.5f;
+    }
+
+    @Override
+    public void collectCoin(int i, int j) {
+        coins[i * columns + j] = false;
+    }
+
+    @Override
+    public int coinCount() {
+        return coinCount;
+    }
+}
@@ -0,0 +1,55 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * A recording must replay into the same game, and only with the physics it was played with
+ */
+public class RecordingTest {
+    private static byte[] recorded() throws IOException {
+        Recording recording = new Recording(10, 8, 1080, 1920, 10, 8, Difficulty.Medium, MazeAlgorithm.Backtracker, 5, false);
+        World world = recording.newWorld();
+        world.recording = recording;
+        world.initialize();
+        for (int k = 0; k < 2000; k++) {
+            World.Result result = world.step(3, k % 400 < 200 ? 2 : -2, 1.0 / 240);
+            if (result == World.Result.fallen)
+                break;
+            // played on like the game does
+            if (result == World.Result.cleared)
+                world.initialize();
+        }
+        recording.finish(world);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recording.write(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void replayEndsLikeTheGame() throws IOException {
+        Replay.Outcome outcome = Replay.run(Recording.read(new ByteArrayInputStream(recorded())));
+        assertTrue(outcome.matches);
+    }
+
+    @Test
+    public void olderVersionIsRejected() throws IOException {
+        byte[] bytes = recorded();
+        // version follows the magic number
+        assertEquals(Recording.VERSION, bytes[7]);
+        bytes[7] = (byte) (Recording.VERSION - 1);
+        try {
+            Recording.read(new ByteArrayInputStream(bytes));
+            fail("older recording was read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("older physics"));
+        }
+    }
+}
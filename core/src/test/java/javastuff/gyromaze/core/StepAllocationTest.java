@@ -0,0 +1,70 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+/**
+ * A physics step runs 240 times a second and must not allocate, or the garbage collector stalls the game
+ */
+public class StepAllocationTest {
+    private static final double STEP = 1.0 / 240;
+
+    /**
+     * Puts the ball back at rest in the middle of the first cell
+     */
+    private static void restart(World world) {
+        Ball b = world.ball;
+        b.X = b.oldX = world.horizontalWallHWidth / 2f;
+        b.Y = b.oldY = world.verticalWallHeight / 2f;
+        b.velX = b.velY = 0;
+    }
+
+    /**
+     * @return Number of steps in which a wall or the bounds stopped the ball
+     */
+    private static int play(World world, int steps) {
+        int stops = 0;
+        for (int k = 0; k < steps; k++) {
+            // tilt changes every second, the ball rolls into walls, coins and holes
+            int phase = k / 240 % 4;
+            // a ball that fell in or cleared the level starts over, so every step keeps moving it
+            if (world.step(phase < 2 ? -3 : 3, phase % 2 == 0 ? 3 : -3, STEP) != World.Result.playing)
+                restart(world);
+            if (world.ball.velX == 0 || world.ball.velY == 0)
+                stops++;
+        }
+        return stops;
+    }
+
+    @Test
+    public void stepAllocatesNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // larger than the screen, walls, coins and holes are placed from the level as the ball goes
+        World world = new World(100, 100, 1080, 1920, 10, 8, Difficulty.Hard, 3);
+        world.initialize();
+        // warm up, so the measurement also covers the compiled code
+        play(world, 20000);
+        threads.getThreadAllocatedBytes(thread);
+
+        // least of a few rounds: one-off work such as the JIT compiling a path first taken in a round may allocate,
+        // a step that allocates does so in every round
+        long allocated = Long.MAX_VALUE;
+        int stops = 0;
+        for (int round = 0; round < 3 && allocated >= 1024; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            stops = play(world, 10000);
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        assertTrue(allocated + " bytes allocated by 10000 steps", allocated < 1024);
+        assertTrue("only " + stops + " steps hit a wall", stops > 100);
+    }
+}
@@ -0,0 +1,70 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tiles carved in parallel and stitched together must still make a perfect maze
+ */
+public class TiledCarverTest {
+    private static final int[] TILE_SIZES = {1, 3, 16, 64, 100};
+    private static final int[] PARALLELISM = {1, 2, 4};
+
+    @Test
+    public void tiledMazeIsPerfect() {
+        for (int threads : PARALLELISM) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (MazeAlgorithm algorithm : MazeAlgorithm.values())
+                    for (int tileSize : TILE_SIZES)
+                        for (int seed = 0; seed < 4; seed++) {
+                            // sizes that tiles do not divide evenly, down to a single row
+                            int width = 1 + seed * 37 % 90, height = 1 + seed * 53 % 70;
+                            MazeGenerator maze = new MazeGenerator(width, height, seed);
+                            maze.Generate(Difficulty.Medium, new TiledCarver(algorithm, tileSize, pool));
+                            MazeGeneratorTest.assertPerfect(algorithm + " tiles of " + tileSize + " on " + threads + " threads "
+                                    + width + "x" + height + " seed " + seed, maze);
+                        }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void mazeDoesNotDependOnThreadCount() {
+        ForkJoinPool one = new ForkJoinPool(1), four = new ForkJoinPool(4);
+        try {
+            for (MazeAlgorithm algorithm : MazeAlgorithm.values()) {
+                MazeGenerator a = new MazeGenerator(70, 50, 7), b = new MazeGenerator(70, 50, 7);
+                a.Generate(Difficulty.Hard, new TiledCarver(algorithm, 16, one));
+                b.Generate(Difficulty.Hard, new TiledCarver(algorithm, 16, four));
+                assertArrayEquals(algorithm.toString(), a.horizontalWalls, b.horizontalWalls);
+                assertArrayEquals(algorithm.toString(), a.verticalWalls, b.verticalWalls);
+            }
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    public void largeLevelIsCarvedInTilesTheSameOnAnyPool() {
+        assertEquals(0, new Level(5, Difficulty.Medium, 1023, 1024).tileSize);
+        Level alone = new Level(5, Difficulty.Medium, MazeAlgorithm.Kruskal, 1024, 1024);
+        assertEquals(Level.TILE_SIZE, alone.tileSize);
+        MazeGeneratorTest.assertPerfect("tiled level", alone.maze);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Level pooled = new Level(5, Difficulty.Medium, MazeAlgorithm.Kruskal, 1024, 1024, pool);
+            assertArrayEquals(alone.maze.horizontalWalls, pooled.maze.horizontalWalls);
+            assertArrayEquals(alone.maze.verticalWalls, pooled.maze.verticalWalls);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Wall collisions around the ball against the full scan of the maze they replace
+ */
+public class WallCollisionTest {
+    private static final int CELLS_X = 10, CELLS_Y = 8;
+
+    /**
+     * Puts a ball of a random radius at a random place, coming from a random place at most a ball's radius away
+     */
+    private static void place(World world, Random random, float[] state) {
+        int radius = 1 + random.nextInt((int) world.circleDiameter);
+        state[0] = radius;
+        state[1] = random.nextFloat() * world.width;
+        state[2] = random.nextFloat() * world.height;
+        state[3] = state[1] + (random.nextFloat() * 2 - 1) * radius;
+        state[4] = state[2] + (random.nextFloat() * 2 - 1) * radius;
+        state[5] = random.nextFloat() * 200 - 100;
+        state[6] = random.nextFloat() * 200 - 100;
+    }
+
+    private static Ball reset(World world, float[] state) {
+        Ball b = world.ball = new Ball((int) state[0]);
+        b.X = state[1];
+        b.Y = state[2];
+        b.oldX = state[3];
+        b.oldY = state[4];
+        b.velX = state[5];
+        b.velY = state[6];
+        return b;
+    }
+
+    @Test
+    public void nearbyWallsResolveLikeAllWalls() {
+        Random random = new Random(1);
+        float[] state = new float[7];
+        int contacts = 0;
+        for (int level = 0; level < 50; level++) {
+            World world = new World(CELLS_X, CELLS_Y, 1080, 1920, Difficulty.values()[level % 3], level);
+            world.initialize(new Level(level, Difficulty.Medium, MazeAlgorithm.values()[level % 5], CELLS_X, CELLS_Y));
+            for (int k = 0; k < 2000; k++) {
+                place(world, random, state);
+                Ball all = reset(world, state);
+                world.allWallCollisions();
+                Ball nearby = reset(world, state);
+                world.nearbyWallCollisions();
+
+                String at = "level " + level + " ball " + k;
+                assertEquals(at, all.X, nearby.X, 0);
+                assertEquals(at, all.Y, nearby.Y, 0);
+                assertEquals(at, all.velX, nearby.velX, 0);
+                assertEquals(at, all.velY, nearby.velY, 0);
+                if (all.X != state[1] || all.Y != state[2])
+                    contacts++;
+            }
+        }
+        // a good share of the balls must touch a wall for the comparison to mean anything
+        assertTrue("only " + contacts + " contacts", contacts > 10000);
+    }
+
+    @Test
+    public void stepsGoLikeWithTheFullScan() {
+        int stops = 0;
+        for (int level = 0; level < 10; level++) {
+            World nearby = new World(CELLS_X, CELLS_Y, 1080, 1920, Difficulty.Hard, level);
+            World all = new World(CELLS_X, CELLS_Y, 1080, 1920, Difficulty.Hard, level);
+            nearby.initialize();
+            all.initialize();
+            all.scanAllWalls = true;
+            for (int k = 0; k < 5000; k++) {
+                // tilt changes every second, the ball rolls along and into walls
+                int phase = k / 240 % 4;
+                float sensorX = phase < 2 ? -3 : 3, sensorY = phase % 2 == 0 ? 3 : -3;
+                String at = "level " + level + " step " + k;
+                World.Result r = nearby.step(sensorX, sensorY, 1.0 / 240);
+                assertEquals(at, r, all.step(sensorX, sensorY, 1.0 / 240));
+                assertEquals(at, nearby.ball.X, all.ball.X, 0);
+                assertEquals(at, nearby.ball.Y, all.ball.Y, 0);
+                if (nearby.ball.velX == 0 || nearby.ball.velY == 0)
+                    stops++;
+                // a ball that fell in or cleared the level starts over in both
+                if (r != World.Result.playing) {
+                    for (Ball b : new Ball[]{nearby.ball, all.ball}) {
+                        b.X = b.oldX = nearby.horizontalWallHWidth / 2f;
+                        b.Y = b.oldY = nearby.verticalWallHeight / 2f;
+                        b.velX = b.velY = 0;
+                    }
+                }
+            }
+        }
+        assertTrue("only " + stops + " steps hit a wall", stops > 1000);
+    }
+
+    /**
+     * @return Wall of the list covering all of w
+     */
+    private static Wall covering(WallList walls, Wall w) {
+        for (int k = 0; k < walls.size(); k++) {
+            Wall c = walls.get(k);
+            if (c.x <= w.x && c.x + c.width >= w.x + w.width && c.y <= w.y && c.y + c.height >= w.y + w.height)
+                return c;
+        }
+        return null;
+    }
+
+    /**
+     * Walls merged within the cells around the ball are cut off where the whole maze's walls go on,
+     * each of them must lie inside one wall of the whole maze
+     */
+    @Test
+    public void nearbyWallsLieInsideTheWholeWalls() {
+        Random random = new Random(2);
+        float[] state = new float[7];
+        WallList nearby = new WallList(), all = new WallList();
+        int walls = 0;
+        for (int level = 0; level < 50; level++) {
+            World world = new World(CELLS_X, CELLS_Y, 1080, 1920, Difficulty.Medium, level);
+            Level maze = new Level(level, Difficulty.Medium, MazeAlgorithm.values()[level % 5], CELLS_X, CELLS_Y);
+            world.initialize(maze);
+            world.walls(maze, 0, CELLS_X - 1, 0, CELLS_Y - 1, all);
+            for (int k = 0; k < 200; k++) {
+                place(world, random, state);
+                Ball b = reset(world, state);
+                int row = world.row(b.Y), col = world.column(b.X);
+                world.walls(maze, row - 1, row + 1, col - 1, col + 1, nearby);
+                for (int n = 0; n < nearby.size(); n++) {
+                    assertTrue("level " + level + " ball " + k + " wall not in the maze", covering(all, nearby.get(n)) != null);
+                    walls++;
+                }
+            }
+        }
+        assertTrue("only " + walls + " walls", walls > 10000);
+    }
+}
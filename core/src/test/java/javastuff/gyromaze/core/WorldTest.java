@@ -0,0 +1,233 @@
+package javastuff.gyromaze.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Outcomes of physics steps in small levels built by hand
+ */
+public class WorldTest {
+    private static final double STEP = 1.0 / 240;
+    /**
+     * Tilt hard enough to cross a cell within a second, the x sensor is inverted
+     */
+    private static final float RIGHT = -5, LEFT = 5, DOWN = 5, UP = -5;
+
+    private static World world(Grid level) {
+        World world = new World(10, 8, 1080, 1920, Difficulty.Medium, 1);
+        world.initialize(level);
+        return world;
+    }
+
+    /**
+     * Puts the ball at rest in the middle of cell (i, j), a few pixels off so that it never meets a wall
+     * exactly as far from two of its sides
+     */
+    private static Ball center(World world, int i, int j) {
+        Ball b = world.ball;
+        b.X = b.oldX = j * world.columnPitch + world.horizontalWallHWidth / 2f + 7;
+        b.Y = b.oldY = i * world.rowPitch + world.verticalWallHeight / 2f + 5;
+        b.velX = b.velY = 0;
+        return b;
+    }
+
+    /**
+     * Steps for a second unless the level ends
+     */
+    private static World.Result roll(World world, float sensorX, float sensorY) {
+        for (int k = 0; k < 240; k++) {
+            World.Result r = world.step(sensorX, sensorY, STEP);
+            if (r != World.Result.playing)
+                return r;
+        }
+        return World.Result.playing;
+    }
+
+    @Test
+    public void wallStopsTheBall() {
+        World world = world(new OpenGrid(10, 8).verticalWall(0, 0).horizontalWall(2, 3).coin(9, 7));
+        Ball b = center(world, 0, 0);
+        assertEquals(World.Result.playing, roll(world, RIGHT, 0));
+        // resting against the left side of the wall
+        float wallX = world.horizontalWallHWidth;
+        assertTrue(b.X + b.diameter <= wallX);
+        assertTrue(b.X + b.diameter >= wallX - 2);
+        // stopped on every touch, only the tilt of a few steps builds up again
+        assertTrue(Math.abs(b.velX) < 50);
+
+        b = center(world, 1, 3);
+        assertEquals(World.Result.playing, roll(world, 0, DOWN));
+        // resting on top of the wall below the next row
+        float wallY = 2 * world.rowPitch + world.verticalWallHeight;
+        assertTrue(b.Y + b.diameter <= wallY);
+        assertTrue(b.Y + b.diameter >= wallY - 2);
+        assertTrue(Math.abs(b.velY) < 50);
+    }
+
+    @Test
+    public void fastBallDoesNotJumpOverAWall() {
+        World world = world(new OpenGrid(10, 8).verticalWall(0, 0).coin(9, 7));
+        // a single step longer than the wall is thick and the ball is wide
+        Ball b = center(world, 0, 0);
+        b.velX = (float) ((world.wallSize + 4 * b.diameter) / STEP);
+        assertEquals(World.Result.playing, world.step(0, 0, STEP));
+        assertTrue(b.X + b.diameter <= world.horizontalWallHWidth);
+        assertEquals(0, b.velX, 0);
+    }
+
+    @Test
+    public void fastBallFallsIntoHoleOnItsWay() {
+        World world = world(new OpenGrid(10, 8).hole(0, 1).coin(9, 7));
+        Ball b = center(world, 0, 0);
+        // from the middle of the first cell past the middle of the third in one step
+        b.velX = (float) (2.2 * world.columnPitch / STEP);
+        assertEquals(World.Result.fallen, world.step(0, 0, STEP));
+    }
+
+    @Test
+    public void boundsKeepTheBall() {
+        World world = world(new OpenGrid(10, 8).coin(0, 7));
+        Ball b = center(world, 1, 1);
+        assertEquals(World.Result.playing, roll(world, LEFT, UP));
+        assertEquals(b.diameter, b.X, 0);
+        assertEquals(b.diameter, b.Y, 0);
+
+        b = center(world, 8, 6);
+        assertEquals(World.Result.playing, roll(world, RIGHT, DOWN));
+        assertEquals(world.width - b.diameter, b.X, 0);
+        assertEquals(world.height - b.diameter, b.Y, 0);
+    }
+
+    @Test
+    public void ballFallsIntoHole() {
+        World world = world(new OpenGrid(10, 8).hole(0, 0).hole(0, 2).coin(9, 7));
+        center(world, 0, 0);
+        assertEquals(World.Result.fallen, world.step(0, 0, STEP));
+
+        // rolling from the next cell, over the open wall between them
+        center(world, 0, 1);
+        assertEquals(World.Result.fallen, roll(world, RIGHT, 0));
+    }
+
+    @Test
+    public void wallKeepsTheBallFromHole() {
+        World world = world(new OpenGrid(10, 8).verticalWall(0, 1).hole(0, 2).coin(9, 7));
+        center(world, 0, 1);
+        assertEquals(World.Result.playing, roll(world, RIGHT, 0));
+    }
+
+    @Test
+    public void collectingTheLastCoinClearsTheLevel() {
+        OpenGrid level = new OpenGrid(10, 8).coin(0, 0).coin(5, 5);
+        World world = world(level);
+        assertEquals(2, world.coinCount);
+
+        center(world, 0, 0);
+        assertEquals(World.Result.playing, world.step(0, 0, STEP));
+        assertFalse(level.hasCoin(0, 0));
+        assertEquals(1, world.coinCount);
+        assertEquals(world.scoreMultiplier, world.score);
+
+        center(world, 5, 4);
+        assertEquals(World.Result.cleared, roll(world, RIGHT, 0));
+        assertEquals(0, world.coinCount);
+        assertEquals(2 * world.scoreMultiplier, world.score);
+    }
+
+    @Test
+    public void sameSeedGivesSameLevels() {
+        World a = new World(10, 8, 1080, 1920, Difficulty.Hard, 5), b = new World(10, 8, 1080, 1920, Difficulty.Hard, 5);
+        for (int level = 0; level < 3; level++)
+            LevelCacheTest.assertSameLevel("level " + level, a.nextLevel(), b.nextLevel());
+        // a level comes from its seed alone
+        LevelCacheTest.assertSameLevel("level", new Level(9, Difficulty.Easy, 10, 8), new Level(9, Difficulty.Easy, 10, 8));
+    }
+
+    @Test
+    public void holeClosesTheWayOnlyAcrossItsNarrowSide() {
+        // a hard hole in the middle of a cell leaves less room than the ball needs between it and the cell's sides,
+        // but plenty between it and the top and bottom
+        OpenGrid level = new OpenGrid(10, 8).coin(9, 7)
+                .verticalWall(1, 0).verticalWall(1, 1).hole(1, 1)
+                .horizontalWall(2, 3).horizontalWall(3, 3).hole(3, 3);
+        World world = new World(10, 8, 1080, 1920, Difficulty.Hard, 1);
+        world.initialize(level);
+        assertFalse(world.passes(level, 1, 1, World.Side.top, World.Side.bottom));
+        assertTrue(world.passes(level, 3, 3, World.Side.left, World.Side.right));
+        assertTrue(world.passes(level, 3, 3, World.Side.right, World.Side.left));
+    }
+
+    @Test
+    public void openSideLeavesRoomToGoRoundAHole() {
+        OpenGrid level = new OpenGrid(10, 8).coin(9, 7).verticalWall(1, 1).hole(1, 1);
+        World world = new World(10, 8, 1080, 1920, Difficulty.Hard, 1);
+        world.initialize(level);
+        assertTrue(world.passes(level, 1, 1, World.Side.top, World.Side.bottom));
+    }
+
+    /**
+     * Side of the wall between cells (2, 3) and (2, 4) that a ball of radius 10 overlapping it,
+     * coming from (oldX, oldY) relative to the wall's top left corner, is pushed out of
+     */
+    private static World.Side side(OpenGrid level, float oldX, float oldY) {
+        World world = world(level.verticalWall(2, 3));
+        Wall w = world.walls(world.level, 2, 2, 3, 3, new WallList()).get(0);
+        Ball b = world.ball = new Ball(10);
+        b.X = w.x + 5;
+        b.Y = w.y + w.height / 2f;
+        b.oldX = w.x + oldX;
+        b.oldY = w.y + oldY;
+        world.allWallCollisions();
+        if (b.X == w.x - 11)
+            return World.Side.left;
+        if (b.X == w.x + w.width + 11)
+            return World.Side.right;
+        if (b.Y == w.y - 11)
+            return World.Side.top;
+        if (b.Y == w.y + w.height + 11)
+            return World.Side.bottom;
+        fail("ball left in the wall at " + b.X + ", " + b.Y);
+        return null;
+    }
+
+    private static World.Side side(float oldX, float oldY) {
+        return side(new OpenGrid(10, 8).coin(9, 7), oldX, oldY);
+    }
+
+    @Test
+    public void collisionSideIsTheSideTheBallCameFrom() {
+        World world = world(new OpenGrid(10, 8).coin(9, 7));
+        // a lone wall reaches into the wall rows above and below its cell
+        float height = world.verticalWallHeight + 2 * world.wallSize;
+        assertEquals(World.Side.left, side(-15, height / 2));
+        assertEquals(World.Side.right, side(world.wallSize + 15, height / 2));
+        assertEquals(World.Side.top, side(5, -15));
+        assertEquals(World.Side.bottom, side(5, height + 15));
+    }
+
+    @Test
+    public void collisionSideAtCornerIsTheFartherOut() {
+        World world = world(new OpenGrid(10, 8).coin(9, 7));
+        float height = world.verticalWallHeight + 2 * world.wallSize;
+        // rolling along the top of a wall that ends here, just past the corner: stays on top
+        assertEquals(World.Side.top, side(world.wallSize + 5, -11));
+        // coming down along the right side: stays on the right
+        assertEquals(World.Side.right, side(world.wallSize + 11, -5));
+        // equally far out on both: top or bottom
+        assertEquals(World.Side.bottom, side(world.wallSize + 10, height + 10));
+    }
+
+    @Test
+    public void ballInsideLeavesByTheClosestSide() {
+        World world = world(new OpenGrid(10, 8).coin(9, 7));
+        float height = world.verticalWallHeight + 2 * world.wallSize;
+        assertEquals(World.Side.left, side(2, height / 2));
+        assertEquals(World.Side.right, side(world.wallSize - 2, height / 2));
+        assertEquals(World.Side.top, side(5, 1));
+        assertEquals(World.Side.bottom, side(5, height - 1));
+    }
+}